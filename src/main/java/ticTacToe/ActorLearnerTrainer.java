@@ -0,0 +1,331 @@
+package ticTacToe;
+
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Trains a {@link QLearningAgent} with separate actor and learner threads. Each actor plays episodes against its own
+ * {@link TTTEnvironment} and opponent, choosing moves epsilon-greedily from the latest published snapshot of the
+ * Q-Table, and puts its transitions into its own bounded {@link TransitionQueue}. The learner (the thread that calls
+ * {@link #train}) drains the queues in batches, is the only one to update the agent's Q-Table, and publishes a new
+ * snapshot every {@link #snapshotInterval} updates.
+ *
+ * So experience generation and learning run side by side, and the actors never wait for the learner unless their
+ * queues are full. The price is that actors act on a Q-Table that is a little out of date: the staleness of a
+ * transition is the number of updates the learner made between the snapshot it was chosen with and applying it.
+ * This, the queue depths and the throughput are recorded by every call to {@link #train}.
+ * @author ae187
+ *
+ */
+public class ActorLearnerTrainer {
+
+	QLearningAgent agent;
+
+	int actors;
+
+	/**
+	 * makes the opponent of each actor. Null for random opponents.
+	 */
+	Supplier<? extends Agent> opponents;
+
+	/**
+	 * the capacity of each actor's queue, in transitions
+	 */
+	int queueCapacity=1024;
+
+	/**
+	 * the most transitions the learner takes from one queue at a time
+	 */
+	int batchSize=256;
+
+	/**
+	 * the number of updates between snapshots
+	 */
+	int snapshotInterval=2048;
+
+	/**
+	 * A Q-Table snapshot, together with the number of updates the learner had made when it was taken. Published as one
+	 * object so that actors never pair a table with the version of another.
+	 */
+	static final class Snapshot {
+
+		final DenseQTable table;
+		final long version;
+
+		Snapshot(DenseQTable table, long version)
+		{
+			this.table=table;
+			this.version=version;
+		}
+	}
+
+	/**
+	 * the snapshot the actors play with
+	 */
+	volatile Snapshot snapshot;
+
+	//statistics of the last call to train()
+	long updates;
+	long episodes;
+	long trainingNanos;
+	long snapshots;
+	long rounds;
+	long totalDepth;
+	int maxDepth;
+	long totalStaleness;
+	long maxStaleness;
+	long blockedNanos;
+
+	/**
+	 * @param agent the agent to train. Its learning rate, discount, epsilon and rewards (those of its environment) are used.
+	 * @param actors the number of actor threads
+	 * @param opponents makes the opponent of each actor, since most agents can't be shared between threads.
+	 * Null for random opponents.
+	 */
+	public ActorLearnerTrainer(QLearningAgent agent, int actors, Supplier<? extends Agent> opponents)
+	{
+		this.agent=agent;
+		this.actors=actors;
+		this.opponents=opponents;
+	}
+
+	public void setQueueCapacity(int queueCapacity)
+	{
+		this.queueCapacity=queueCapacity;
+	}
+
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize=batchSize;
+	}
+
+	public void setSnapshotInterval(int snapshotInterval)
+	{
+		this.snapshotInterval=snapshotInterval;
+	}
+
+	/**
+	 * Has every actor play {@code episodesPerActor} episodes, learns from all of their transitions, and then extracts
+	 * the agent's policy.
+	 * @throws IllegalMoveException if an actor's environment rejected a move. Any other exception or error that stopped
+	 * an actor is rethrown here too, once the other actors are done: unchecked ones as they are, an interruption wrapped
+	 * in a RuntimeException.
+	 */
+	public void train(int episodesPerActor) throws IllegalMoveException
+	{
+		if (agent.qTable==null)
+			agent.initQTable();
+
+		DenseQTable qTable=agent.qTable;
+		updates=0;
+		episodes=(long)actors*episodesPerActor;
+		snapshots=0;
+		rounds=0;
+		totalDepth=0;
+		maxDepth=0;
+		totalStaleness=0;
+		maxStaleness=0;
+		publish(qTable);
+
+		final TransitionQueue[] queues=new TransitionQueue[actors];
+		final Throwable[] errors=new Throwable[actors];
+		final AtomicInteger finished=new AtomicInteger();
+		Thread[] threads=new Thread[actors];
+		long start=System.nanoTime();
+		for(int a=0;a<actors;a++)
+		{
+			queues[a]=new TransitionQueue(queueCapacity);
+			Agent opponent=opponents==null ? new RandomAgent() : opponents.get();
+			TTTEnvironment env=agent.env;
+			final TTTEnvironment actorEnv=new TTTEnvironment(opponent, env.winReward, env.loseReward, env.livingReward, env.drawReward);
+			final TransitionQueue queue=queues[a];
+			//split here, in order, rather than in the thread, so each actor's stream depends only on the seed
+			final SplittableRandom random=RandomStreams.split();
+			final int actor=a;
+			final int n=episodesPerActor;
+			threads[a]=new Thread("q-learning-actor-"+a) {
+				public void run()
+				{
+					try {
+						for(int i=0;i<n;i++)
+							playEpisode(actorEnv, queue, random, agent.exploration.epsilon(i));
+					} catch (Throwable e) {
+						//whatever stopped this actor, the learner reports it
+						errors[actor]=e;
+					} finally {
+						finished.incrementAndGet();
+					}
+				}
+			};
+			//so that a failing learner doesn't leave the actors waiting forever
+			threads[a].setDaemon(true);
+			threads[a].start();
+		}
+
+		int[] slots=new int[batchSize];
+		double[] rewards=new double[batchSize];
+		int[] nextIds=new int[batchSize];
+		long[] versions=new long[batchSize];
+		long lastSnapshot=0;
+		while (true)
+		{
+			//read before draining, so that nothing put before the last actor finished can be missed
+			boolean done=finished.get()==actors;
+			int depth=0;
+			int drained=0;
+			for(TransitionQueue queue:queues)
+			{
+				int n=queue.drainTo(slots, rewards, nextIds, versions, batchSize);
+				depth+=n+queue.size();
+				for(int i=0;i<n;i++)
+				{
+					double next=nextIds[i]<0 ? 0.0 : qTable.maxQ(nextIds[i]);
+					qTable.update(slots[i], agent.alpha, rewards[i]+agent.discount*next);
+					long staleness=updates-versions[i];
+					totalStaleness+=staleness;
+					if (staleness>maxStaleness)
+						maxStaleness=staleness;
+					updates++;
+				}
+				drained+=n;
+			}
+			rounds++;
+			totalDepth+=depth;
+			if (depth>maxDepth)
+				maxDepth=depth;
+
+			if (updates-lastSnapshot>=snapshotInterval)
+			{
+				publish(qTable);
+				lastSnapshot=updates;
+			}
+
+			if (drained==0)
+			{
+				if (done)
+					break;
+				LockSupport.parkNanos(50000);
+			}
+		}
+		trainingNanos=System.nanoTime()-start;
+
+		blockedNanos=0;
+		for(TransitionQueue queue:queues)
+			blockedNanos+=queue.getBlockedNanos();
+
+		for(Throwable e:errors)
+			if (e instanceof IllegalMoveException)
+				throw (IllegalMoveException)e;
+			else if (e instanceof RuntimeException)
+				throw (RuntimeException)e;
+			else if (e instanceof Error)
+				throw (Error)e;
+			else if (e!=null)
+				throw new RuntimeException("Interrupted Q-Learning actor", e);
+
+		agent.policy=agent.extractPolicy();
+	}
+
+	void publish(DenseQTable qTable)
+	{
+		snapshot=new Snapshot(qTable.snapshot(), updates);
+		snapshots++;
+	}
+
+	/**
+	 * Plays one episode against {@code env} with the latest snapshot, putting each transition into {@code queue}, and
+	 * then resets {@code env}.
+	 * @param epsilon the exploration rate for this episode, from the agent's schedule
+	 */
+	void playEpisode(TTTEnvironment env, TransitionQueue queue, SplittableRandom random, double epsilon) throws IllegalMoveException, InterruptedException
+	{
+		Snapshot current=snapshot;
+		DenseQTable table=current.table;
+		long version=current.version;
+		StateIndex index=table.getIndex();
+		Game g=env.getCurrentGameState();
+		while (!g.isTerminal())
+		{
+			int cell=EpsilonGreedyPolicy.selectCell(table, g, epsilon, random);
+			int slot=table.slot(g, cell);
+
+			Outcome outcome=env.executeMove(Move.of(g.whoseTurn.getName(), cell));
+			Game gPrime=outcome.sPrime;
+			queue.put(slot, outcome.localReward, gPrime.isTerminal() ? -1 : index.getId(gPrime), version);
+		}
+
+		env.resetEpisode();
+	}
+
+	/**
+	 * @return the number of Q updates the last {@link #train} made, one per transition
+	 */
+	public long getUpdates()
+	{
+		return updates;
+	}
+
+	public long getEpisodes()
+	{
+		return episodes;
+	}
+
+	public long getTrainingNanos()
+	{
+		return trainingNanos;
+	}
+
+	/**
+	 * @return the transitions learned from per second in the last {@link #train}
+	 */
+	public double getThroughput()
+	{
+		return trainingNanos==0 ? 0 : updates*1e9/trainingNanos;
+	}
+
+	/**
+	 * @return the number of snapshots published in the last {@link #train}, including the first
+	 */
+	public long getSnapshots()
+	{
+		return snapshots;
+	}
+
+	/**
+	 * @return the mean number of transitions waiting in all the queues, sampled each time the learner went round them
+	 */
+	public double getMeanQueueDepth()
+	{
+		return rounds==0 ? 0 : (double)totalDepth/rounds;
+	}
+
+	public int getMaxQueueDepth()
+	{
+		return maxDepth;
+	}
+
+	/**
+	 * @return the mean staleness of the transitions, in updates
+	 */
+	public double getMeanStaleness()
+	{
+		return updates==0 ? 0 : (double)totalStaleness/updates;
+	}
+
+	public long getMaxStaleness()
+	{
+		return maxStaleness;
+	}
+
+	/**
+	 * @return the total time the actors spent waiting for room in their queues, in nanoseconds
+	 */
+	public long getActorBlockedNanos()
+	{
+		return blockedNanos;
+	}
+
+}
@@ -1,5 +1,8 @@
 package ticTacToe;
 
+import java.io.File;
+import java.io.IOException;
+
 
 public class Agent {
 	
@@ -58,9 +61,53 @@ public class Agent {
 	}
 	
 	
+	/**
+	 * Loads this agent's policy from {@link #getPolicyFileName()}, if that file exists, and plays by it from now on.
+	 * @return the loaded policy, or null if there is no such file or it can't be loaded
+	 */
 	public Policy loadPolicyFromFile()
 	{
-		return null;
+		String file=getPolicyFileName();
+		if (!new File(file).isFile())
+			return null;
+		
+		try {
+			return loadPolicyFromFile(file);
+		} catch (IOException e) {
+			System.out.println("Could not load policy from "+file+": "+e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Memory-maps a policy written by {@link PolicyFile#write} and plays by it from now on.
+	 * @param file
+	 * @return the loaded policy
+	 * @throws IOException if the file can't be read or is not a valid policy file
+	 */
+	public Policy loadPolicyFromFile(String file) throws IOException
+	{
+		this.policy=PolicyFile.load(file);
+		return this.policy;
+	}
+	
+	/**
+	 * Writes this agent's policy to {@code file}, in the format of {@link PolicyFile}.
+	 * @param file
+	 * @throws IOException
+	 */
+	public void savePolicyToFile(String file) throws IOException
+	{
+		PolicyFile.write(this.policy, file);
+	}
+	
+	/**
+	 * @return the file {@link #loadPolicyFromFile()} loads from: the agent's class name with a .policy extension, in 
+	 * the working directory.
+	 */
+	public String getPolicyFileName()
+	{
+		return getClass().getSimpleName()+".policy";
 	}
 	
 	
@@ -1,8 +1,7 @@
 package ticTacToe;
 
 
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 /**
  * An agrgessive policy: if there is a winning move given a game state (Game object) then this policy finds it. Otherwise returns a
  * random available move.
@@ -12,31 +11,33 @@ import java.util.Random;
  */
 public class AggressivePolicy extends Policy {
 	
+	SplittableRandom r=RandomStreams.split();
+	
+	/**
+	 * Replaces the stream of random numbers this policy draws from, see {@link RandomStreams}.
+	 */
+	public void setRandom(SplittableRandom r)
+	{
+		this.r=r;
+	}
+	
 	
 	public Move getMove(Game g) {
 		
-		
-		List<Move> moves=g.getPossibleMoves();
-		
-		for(Move m:moves)
+		//try each move in place: no copies of the game and no list of moves
+		char me=g.whoseTurn.getName();
+		int empty=g.emptyCells();
+		for(int rest=empty;rest!=0;rest&=rest-1)
 		{
-			
-			Game resulting=null;
-			try{
-				resulting=g.simulateMove(m);
-			}
-			catch(IllegalMoveException e)
-			{
-				System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
-			if (resulting.getState()==Game.X_WON||resulting.getState()==Game.O_WON)
-				return m;
+			int cell=Integer.numberOfTrailingZeros(rest);
+			g.makeMove(cell);
+			int state=g.getState();
+			g.unmakeMove(cell);
+			if (state==Game.X_WON||state==Game.O_WON)
+				return Move.of(me, cell);
 		}
 		
-		Random r=new Random();
-		
-		return moves.get(r.nextInt(moves.size()));
+		return Move.of(me, Game.nthCell(empty, r.nextInt(Integer.bitCount(empty))));
 		
 	}
 
@@ -0,0 +1,59 @@
+package ticTacToe;
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link DenseQTable} that many threads can read and update at once without locks, for Hogwild-style parallel 
+ * Q-learning (see {@link QLearningAgent#setParallel}). Each Q-value is stored as the bits of a double in an 
+ * {@link AtomicLongArray}; {@link #update} is a compare-and-set loop, so concurrent updates of the same value are 
+ * never lost, while reads may see a value that another thread is about to change.
+ * @author ae187
+ *
+ */
+public class AtomicQTable extends DenseQTable {
+	
+	final AtomicLongArray bits;
+	
+	public AtomicQTable(StateIndex index)
+	{
+		super(index, new double[0]);
+		//all zeros, and the bits of 0.0 are 0
+		this.bits=new AtomicLongArray(index.size()*9);
+	}
+	
+	@Override
+	public double get(int slot)
+	{
+		return Double.longBitsToDouble(bits.get(slot));
+	}
+	
+	@Override
+	public void set(int slot, double v)
+	{
+		bits.set(slot, Double.doubleToRawLongBits(v));
+	}
+	
+	@Override
+	public void update(int slot, double alpha, double target)
+	{
+		while (true) {
+			long old=bits.get(slot);
+			double v=(1-alpha)*Double.longBitsToDouble(old)+alpha*target;
+			if (bits.compareAndSet(slot, old, Double.doubleToRawLongBits(v)))
+				return;
+		}
+	}
+	
+	@Override
+	public void add(int slot, double delta)
+	{
+		while (true) {
+			long old=bits.get(slot);
+			double v=Double.longBitsToDouble(old)+delta;
+			if (bits.compareAndSet(slot, old, Double.doubleToRawLongBits(v)))
+				return;
+		}
+	}
+
+}
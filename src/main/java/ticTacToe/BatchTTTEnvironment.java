@@ -0,0 +1,246 @@
+package ticTacToe;
+
+
+import java.util.SplittableRandom;
+
+/**
+ * A Reinforcement Learning environment that plays {@link #size()} games of Tic-Tac-Toe in lockstep, for training loops
+ * that need many transitions per second. It behaves like {@link TTTEnvironment} with a random opponent and the same
+ * rewards, but keeps every game as primitives in parallel arrays (struct-of-arrays) instead of {@link Game} objects,
+ * and {@link #step(int[])} writes its results into arrays allocated once, so stepping allocates nothing.
+ *
+ * As in {@link TTTEnvironment}, our agent always plays X and the opponent, which moves uniformly at random, plays O. A
+ * move is given as a cell, {@code 3*x+y}. A game that ends in a step is reset to the empty board straight away, so
+ * every game always has a move to make. States are reported as game hashes (see {@link Game#hashCode()}), which
+ * {@link StateIndex#getIdOfHash} turns into state ids.
+ * @author ae187
+ *
+ */
+public class BatchTTTEnvironment {
+
+	/**
+	 * The bitboards of each game, see {@link Game#xBits}.
+	 */
+	final int[] xBits;
+	final int[] oBits;
+
+	/**
+	 * The board part of each game's hash, see {@link Game#code}.
+	 */
+	final int[] code;
+
+	/**
+	 * The result of each game's last step: {@link Game#ONGOING}, {@link Game#X_WON}, {@link Game#O_WON} or {@link Game#DRAW}.
+	 */
+	final int[] status;
+
+	/**
+	 * Filled in by {@link #step(int[])}: the reward of each game, whether it ended, and the state it reached
+	 * (before any reset).
+	 */
+	final double[] rewards;
+	final boolean[] done;
+	final int[] nextStates;
+
+	/**
+	 * The state each game is in now (after any reset), i.e. the one the next action is chosen in.
+	 */
+	final int[] states;
+
+	double winReward=10.0;
+	double loseReward=-50.0;
+	double livingReward=-1.00;
+	double drawReward=0.0;
+
+	SplittableRandom random;
+
+	/**
+	 * The number of games that ended, over all steps so far.
+	 */
+	long episodes;
+
+	/**
+	 * Uses the default rewards of {@link TTTEnvironment}.
+	 * @param size the number of games played at once
+	 */
+	public BatchTTTEnvironment(int size)
+	{
+		this(size, 10.0, -50.0, -1.0, 0.0);
+	}
+
+	public BatchTTTEnvironment(int size, double winReward, double loseReward, double livingReward, double drawReward)
+	{
+		this.xBits=new int[size];
+		this.oBits=new int[size];
+		this.code=new int[size];
+		this.status=new int[size];
+		this.rewards=new double[size];
+		this.done=new boolean[size];
+		this.nextStates=new int[size];
+		this.states=new int[size];
+		this.winReward=winReward;
+		this.loseReward=loseReward;
+		this.livingReward=livingReward;
+		this.drawReward=drawReward;
+		this.random=RandomStreams.split();
+		for(int b=0;b<size;b++)
+			reset(b);
+	}
+
+	/**
+	 * @return the number of games played at once
+	 */
+	public int size()
+	{
+		return states.length;
+	}
+
+	/**
+	 * Plays one move in every game: X plays {@code actions[b]} in game b, then, unless that ended the game, the opponent
+	 * replies. Fills in {@link #getRewards()}, {@link #getDone()} and {@link #getNextStates()}, and resets each game
+	 * that ended.
+	 * @param actions the cell X plays in each game; it must be empty.
+	 * @throws IllegalMoveException if some action is not an empty cell. Then no game is stepped.
+	 */
+	public void step(int[] actions) throws IllegalMoveException
+	{
+		if (actions.length!=states.length)
+			throw new IllegalArgumentException("Need "+states.length+" actions, got "+actions.length);
+
+		//check every action first, so that the batch is never left half stepped
+		for(int b=0;b<states.length;b++)
+		{
+			int cell=actions[b];
+			if (cell<0 || cell>8 || ((xBits[b]|oBits[b])&(1<<cell))!=0)
+				throw new IllegalMoveException("Illegal Move: cell "+cell+" in game "+b+" of the batch");
+		}
+
+		for(int b=0;b<states.length;b++)
+		{
+			int cell=actions[b];
+			int occupied=xBits[b]|oBits[b];
+			int x=xBits[b]|(1<<cell);
+			xBits[b]=x;
+			code[b]+=Game.POW3[8-cell];
+			occupied|=1<<cell;
+
+			double reward;
+			//the hash's turn digit, as in Game#hashCode(): 2 while O is to move, 1 once X is again
+			int turn=2;
+			//one lookup in Game's table of board states
+			int xStatus=Game.statusOf(code[b]);
+			if (xStatus==Game.X_WON)
+			{
+				status[b]=Game.X_WON;
+				reward=winReward;
+			}
+			else if (xStatus==Game.DRAW)
+			{
+				status[b]=Game.DRAW;
+				reward=drawReward;
+			}
+			else
+			{
+				//the opponent plays a random empty cell
+				int empty=Game.FULL&~occupied;
+				int oCell=Game.nthCell(empty, random.nextInt(Integer.bitCount(empty)));
+				int o=oBits[b]|(1<<oCell);
+				oBits[b]=o;
+				code[b]+=2*Game.POW3[8-oCell];
+				turn=1;
+
+				status[b]=Game.statusOf(code[b]);
+				if (status[b]==Game.O_WON)
+					reward=loseReward;
+				else if (status[b]==Game.DRAW)
+					reward=drawReward;
+				else
+					reward=livingReward;
+			}
+
+			boolean ended=status[b]!=Game.ONGOING;
+			rewards[b]=reward;
+			done[b]=ended;
+			nextStates[b]=3*code[b]+turn;
+			if (ended)
+			{
+				episodes++;
+				reset(b);
+			}
+			else
+				states[b]=nextStates[b];
+		}
+	}
+
+	/**
+	 * Starts game b again from the empty board, with X to play.
+	 */
+	void reset(int b)
+	{
+		xBits[b]=0;
+		oBits[b]=0;
+		code[b]=0;
+		status[b]=Game.ONGOING;
+		states[b]=1;
+	}
+
+	/**
+	 * Resets every game.
+	 */
+	public void resetAll()
+	{
+		for(int b=0;b<states.length;b++)
+			reset(b);
+	}
+
+	/**
+	 * @return the state (game hash) each game is in now, i.e. after any resets of the last step. Not a copy:
+	 * {@link #step(int[])} overwrites it.
+	 */
+	public int[] getStates()
+	{
+		return states;
+	}
+
+	/**
+	 * @return the empty cells of game b, as a bitboard: the legal actions.
+	 */
+	public int emptyCells(int b)
+	{
+		return Game.FULL&~(xBits[b]|oBits[b]);
+	}
+
+	/**
+	 * @return the reward each game received in the last step. Not a copy.
+	 */
+	public double[] getRewards()
+	{
+		return rewards;
+	}
+
+	/**
+	 * @return whether each game ended in the last step. Not a copy.
+	 */
+	public boolean[] getDone()
+	{
+		return done;
+	}
+
+	/**
+	 * @return the state (game hash) each game reached in the last step, before any reset. This is the hash the
+	 * {@link Game} would have, so a finished game that X won has O to move. Not a copy.
+	 */
+	public int[] getNextStates()
+	{
+		return nextStates;
+	}
+
+	/**
+	 * @return the number of games that have ended so far
+	 */
+	public long getEpisodes()
+	{
+		return episodes;
+	}
+
+}
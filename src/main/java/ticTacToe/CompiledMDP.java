@@ -0,0 +1,301 @@
+package ticTacToe;
+
+
+import java.util.List;
+
+/**
+ * A {@link TTTMDP} compiled once into primitive arrays, in compressed sparse row (CSR) form, over the states of a 
+ * {@link StateIndex}. Solvers can then do Bellman backups without generating {@link TransitionProb} objects or 
+ * cloning games: after the model is built, a sweep allocates nothing.
+ * 
+ * The actions (moves) of state {@code id} are numbered {@code actionStart[id]} to {@code actionStart[id+1]-1}, in the 
+ * order of {@link Game#getPossibleMoves()}; terminal states have none. The transitions of action {@code a} are 
+ * numbered {@code transitionStart[a]} to {@code transitionStart[a+1]-1}, each with a successor state id, a probability
+ * and a reward.
+ * 
+ * Use {@link TTTMDP#compile(StateIndex)} to get one.
+ * @author ae187
+ *
+ */
+public class CompiledMDP {
+	
+	/**
+	 * What {@link #bestAction} returns for a terminal state, which has no actions.
+	 */
+	public static final int NO_ACTION=-1;
+	
+	final StateIndex index;
+	
+	/**
+	 * The rewards this model was compiled with: win, lose, living and draw, see {@link TTTMDP#compile(StateIndex)}
+	 */
+	final double[] compiledRewards;
+	
+	/**
+	 * state id -> first action, size numStates+1
+	 */
+	final int[] actionStart;
+	
+	/**
+	 * action -> the cell (3*x+y) the move is played in
+	 */
+	final int[] actionCells;
+	
+	/**
+	 * action -> first transition, size numActions+1
+	 */
+	final int[] transitionStart;
+	
+	/**
+	 * transition -> successor state id
+	 */
+	final int[] successors;
+	
+	/**
+	 * transition -> probability
+	 */
+	final double[] probs;
+	
+	/**
+	 * transition -> reward
+	 */
+	final double[] rewards;
+	
+	/**
+	 * The predecessor lists, the reverse of the transition graph: the predecessors of state {@code id}, i.e. the states
+	 * that have at least one action with a transition into it, each listed once, are {@code ids[start[id]]} to 
+	 * {@code ids[start[id+1]-1]}. Published as one immutable object, so that a thread that sees it also sees both 
+	 * arrays filled in.
+	 */
+	static final class Predecessors {
+		
+		/**
+		 * state id -> first predecessor, size numStates+1
+		 */
+		final int[] start;
+		final int[] ids;
+		
+		Predecessors(int[] start, int[] ids)
+		{
+			this.start=start;
+			this.ids=ids;
+		}
+	}
+	
+	/**
+	 * Built on demand by {@link #predecessors()}, null until then.
+	 */
+	private volatile Predecessors predecessors;
+	
+	
+	CompiledMDP(TTTMDP mdp, StateIndex index)
+	{
+		this.index=index;
+		this.compiledRewards=mdp.rewards();
+		int n=index.size();
+		
+		//first pass: count actions and transitions
+		int numActions=0;
+		int numTransitions=0;
+		for(int id=0;id<n;id++) {
+			Game g=index.getGame(id);
+			if (g.isTerminal())
+				continue;
+			
+			for(Move m: g.getPossibleMoves()) {
+				numActions++;
+				numTransitions+=mdp.generateTransitions(g, m).size();
+			}
+		}
+		
+		actionStart=new int[n+1];
+		actionCells=new int[numActions];
+		transitionStart=new int[numActions+1];
+		successors=new int[numTransitions];
+		probs=new double[numTransitions];
+		rewards=new double[numTransitions];
+		
+		//second pass: fill in
+		int a=0;
+		int t=0;
+		for(int id=0;id<n;id++) {
+			actionStart[id]=a;
+			Game g=index.getGame(id);
+			if (g.isTerminal())
+				continue;
+			
+			for(Move m: g.getPossibleMoves()) {
+				actionCells[a]=3*m.x+m.y;
+				transitionStart[a]=t;
+				List<TransitionProb> tps=mdp.generateTransitions(g, m);
+				for(TransitionProb tp: tps) {
+					successors[t]=index.getId(tp.outcome.sPrime);
+					probs[t]=tp.prob;
+					rewards[t]=tp.outcome.localReward;
+					t++;
+				}
+				a++;
+			}
+		}
+		actionStart[n]=a;
+		transitionStart[a]=t;
+		
+	}
+	
+	/**
+	 * @return the state index this model is compiled over
+	 */
+	public StateIndex getIndex()
+	{
+		return index;
+	}
+	
+	public int numStates()
+	{
+		return actionStart.length-1;
+	}
+	
+	public int numActions()
+	{
+		return actionCells.length;
+	}
+	
+	public int numTransitions()
+	{
+		return successors.length;
+	}
+	
+	/**
+	 * @return whether state {@code id} is terminal, i.e. has no actions
+	 */
+	public boolean isTerminal(int id)
+	{
+		return actionStart[id]==actionStart[id+1];
+	}
+	
+	/**
+	 * @param action
+	 * @param values state values, indexed by state id
+	 * @param discount
+	 * @return the expected discounted value of taking {@code action} given {@code values}: 
+	 * sum of prob*(reward+discount*values[successor]) over its transitions.
+	 */
+	public double qValue(int action, double[] values, double discount)
+	{
+		double q=0;
+		for(int t=transitionStart[action];t<transitionStart[action+1];t++)
+			q+=probs[t]*(rewards[t]+discount*values[successors[t]]);
+		
+		return q;
+	}
+	
+	/**
+	 * @param id
+	 * @param values state values, indexed by state id
+	 * @param discount
+	 * @return the Bellman backup of state {@code id}: its best action value given {@code values}, or 0 if it is terminal.
+	 */
+	public double backup(int id, double[] values, double discount)
+	{
+		int first=actionStart[id];
+		int last=actionStart[id+1];
+		if (first==last)
+			return 0.0;
+		
+		double maxValue=Double.NEGATIVE_INFINITY;
+		for(int a=first;a<last;a++) {
+			double q=qValue(a, values, discount);
+			if (q>maxValue)
+				maxValue=q;
+		}
+		
+		return maxValue;
+	}
+	
+	/**
+	 * @param id
+	 * @param values state values, indexed by state id
+	 * @param discount
+	 * @return the greedy action in state {@code id} given {@code values} (the first one, if several are equally good),
+	 * or {@link #NO_ACTION} if it is terminal. A state that has actions always gets one, however low its action values.
+	 */
+	public int bestAction(int id, double[] values, double discount)
+	{
+		double maxValue=Double.NEGATIVE_INFINITY;
+		int maxAction=NO_ACTION;
+		for(int a=actionStart[id];a<actionStart[id+1];a++) {
+			double q=qValue(a, values, discount);
+			if (q>maxValue) {
+				maxValue=q;
+				maxAction=a;
+			}
+		}
+		
+		return maxAction;
+	}
+	
+	/**
+	 * @return the predecessor lists, built the first time they are asked for. Safe to call from several threads.
+	 */
+	Predecessors predecessors()
+	{
+		Predecessors built=predecessors;
+		return (built!=null) ? built : buildPredecessors();
+	}
+	
+	private synchronized Predecessors buildPredecessors()
+	{
+		if (predecessors!=null)
+			return predecessors;
+		
+		int n=numStates();
+		//mark[s]==p once p has been counted as a predecessor of s, to list each predecessor once
+		int[] mark=new int[n];
+		for(int s=0;s<n;s++)
+			mark[s]=-1;
+		
+		int[] start=new int[n+1];
+		for(int p=0;p<n;p++)
+			for(int t=transitionStart[actionStart[p]];t<transitionStart[actionStart[p+1]];t++) {
+				int s=successors[t];
+				if (mark[s]!=p) {
+					mark[s]=p;
+					start[s+1]++;
+				}
+			}
+		
+		for(int s=0;s<n;s++)
+			start[s+1]+=start[s];
+		
+		int[] preds=new int[start[n]];
+		int[] fill=new int[n];
+		for(int s=0;s<n;s++) {
+			mark[s]=-1;
+			fill[s]=start[s];
+		}
+		for(int p=0;p<n;p++)
+			for(int t=transitionStart[actionStart[p]];t<transitionStart[actionStart[p+1]];t++) {
+				int s=successors[t];
+				if (mark[s]!=p) {
+					mark[s]=p;
+					preds[fill[s]++]=p;
+				}
+			}
+		
+		this.predecessors=new Predecessors(start, preds);
+		return this.predecessors;
+	}
+	
+	/**
+	 * @param id the state {@code action} belongs to
+	 * @param action
+	 * @return the move of {@code action}, made by the agent whose turn it is in its state.
+	 */
+	public Move getMove(int id, int action)
+	{
+		Game g=index.getGame(id);
+		int cell=actionCells[action];
+		return Move.of(g.whoseTurn.getName(), cell);
+	}
+
+}
@@ -1,8 +1,7 @@
 package ticTacToe;
 
 
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 /**
  * A defensive policy: if there is a move to block the opponent's X's or O's in a row, this policy finds it and returns it. Otherwise
  * returns random move.
@@ -11,30 +10,34 @@ import java.util.Random;
  */
 public class DefensivePolicy extends Policy {
 	
+	SplittableRandom r=RandomStreams.split();
+	
+	/**
+	 * Replaces the stream of random numbers this policy draws from, see {@link RandomStreams}.
+	 */
+	public void setRandom(SplittableRandom r)
+	{
+		this.r=r;
+	}
+	
 public Move getMove(Game g) {
 		
+		char me=g.whoseTurn.getName();
+		char opponent=(me=='X') ? 'O' : 'X';
+		int empty=g.emptyCells();
 		
-		List<Move> moves=g.getPossibleMovesByOpponent();
-		
-		for(Move m: moves)
+		for(int rest=empty;rest!=0;rest&=rest-1)
 		{
-			Game resulting=g.clone();
-			resulting.getBoard()[m.x][m.y]=m.who.getName();
-			resulting.evaluateGameState();
-			if (resulting.getState()==Game.X_WON||resulting.getState()==Game.O_WON)
+			int cell=Integer.numberOfTrailingZeros(rest);
+			if (g.isWinningMove(opponent, cell/3, cell%3))
 			{
-				Move newMove=new Move(m.who.getName()=='X'?'O':'X', m.x,m.y);
 				System.out.println("Playing defensive move");
-				return newMove;
+				return Move.of(me, cell);
 			}
 		}
 		
-		Random r=new Random();
 		System.out.println("Playing random move");
-		Move randomMove=moves.get(r.nextInt(moves.size()));
-		Move myMove=new Move(randomMove.who.getName()=='X'?'O':'X', randomMove.x,randomMove.y);
-		
-		return myMove;
+		return Move.of(me, Game.nthCell(empty, r.nextInt(Integer.bitCount(empty))));
 		
 	}
 
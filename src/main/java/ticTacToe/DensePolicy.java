@@ -0,0 +1,87 @@
+package ticTacToe;
+
+
+import java.util.HashMap;
+
+/**
+ * A policy stored as one byte per {@link StateIndex} id: the cell (3*x+y) of the move in that state, or 
+ * {@link #NO_MOVE} if there is none (e.g. the state is terminal). {@link #getMove} is an array read plus a lookup into 
+ * the shared moves of {@link Move#of(char, int)}, so it allocates nothing, and a whole policy takes a few 
+ * kilobytes instead of a map of thousands of {@link Game}s and {@link Move}s.
+ * 
+ * Over a symmetric index, the byte is the move in the canonical game, and is mapped back through the inverse of the
+ * transform that took the game there. This is the policy agents trained in symmetry-reduced mode produce.
+ * 
+ * Subclasses may store the cells elsewhere (see {@link MappedPolicy}), so everything reads them through 
+ * {@link #getCell}.
+ * @author ae187
+ *
+ */
+public class DensePolicy extends Policy {
+	
+	static final byte NO_MOVE=(byte)0xFF;
+	
+	final StateIndex index;
+	
+	/**
+	 * id -> cell, or {@link #NO_MOVE}. Null in subclasses that override {@link #getCell}.
+	 */
+	private final byte[] cells;
+	
+	/**
+	 * @param index the states
+	 * @param cells the cell of the move in each state, by id, or {@link #NO_MOVE}. Not copied.
+	 */
+	public DensePolicy(StateIndex index, byte[] cells)
+	{
+		this.index=index;
+		this.cells=cells;
+	}
+	
+	/**
+	 * Creates a policy with the moves in {@code moves}, keyed by the games of {@code index} (the canonical ones, if it 
+	 * is symmetric).
+	 */
+	public DensePolicy(StateIndex index, HashMap<Game, Move> moves)
+	{
+		this(index, new byte[index.size()]);
+		for(int id=0;id<cells.length;id++) {
+			Move m=moves.get(index.getGame(id));
+			cells[id]=(m==null) ? NO_MOVE : (byte)(3*m.x+m.y);
+		}
+	}
+	
+	public StateIndex getIndex()
+	{
+		return index;
+	}
+	
+	/**
+	 * @param id a state id in {@link #getIndex()}
+	 * @return the cell of the move in that state (in the canonical game, if the index is symmetric), or -1 if there 
+	 * is none
+	 */
+	public int getCell(int id)
+	{
+		byte b=cells[id];
+		return b==NO_MOVE ? -1 : b;
+	}
+	
+	@Override
+	public Move getMove(Game g) {
+		
+		int id=index.getId(g);
+		if (id<0)
+			return null;
+		
+		int cell=getCell(id);
+		if (cell<0)
+			return null;
+		
+		if (index.isSymmetric())
+			cell=Game.SYMMETRIES[Game.INVERSE_SYMMETRY[g.canonicalTransform()]][cell];
+		
+		return Move.of(g.whoseTurn.getName(), cell);
+	}
+
+}
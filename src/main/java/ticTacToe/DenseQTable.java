@@ -0,0 +1,182 @@
+package ticTacToe;
+
+/**
+ * A Q-Table backed by a flat primitive array: the Q-value of playing in cell {@code c} (3*x+y) in the game with 
+ * {@link StateIndex} id {@code s} is stored at {@code s*9+c}. Lookups need no hashing of {@link Move}s, no boxing and 
+ * no allocation.
+ * 
+ * With a symmetric {@link StateIndex}, games and cells are mapped to their canonical form before every lookup or update
+ * (see {@link Game#canonical()}), so an update made in one game also applies to all of its rotations and reflections.
+ * 
+ * All Q-values start at 0.
+ * @author ae187
+ *
+ */
+public class DenseQTable {
+	
+	final StateIndex index;
+	
+	/**
+	 * the Q-values, indexed by state id*9+cell
+	 */
+	final double[] q;
+	
+	public DenseQTable(StateIndex index)
+	{
+		this(index, new double[index.size()*9]);
+	}
+	
+	/**
+	 * For subclasses that store the values somewhere else, and pass an empty array here.
+	 */
+	DenseQTable(StateIndex index, double[] q)
+	{
+		this.index=index;
+		this.q=q;
+	}
+	
+	public StateIndex getIndex()
+	{
+		return index;
+	}
+	
+	/**
+	 * @param g
+	 * @param cell a cell of {@code g}
+	 * @return the position of Q(g, cell) in the table. This is also where the Q-values of the symmetric variants of 
+	 * (g, cell) are, in symmetric mode.
+	 */
+	public int slot(Game g, int cell)
+	{
+		if (!index.symmetric)
+			return index.getId(g)*9+cell;
+		
+		return index.getId(g)*9+Game.SYMMETRIES[g.canonicalTransform()][cell];
+	}
+	
+	/**
+	 * @param slot see {@link #slot}
+	 * @return the Q-value stored at {@code slot}
+	 */
+	public double get(int slot)
+	{
+		return q[slot];
+	}
+	
+	/**
+	 * Stores the Q-value v at {@code slot}, see {@link #slot}.
+	 */
+	public void set(int slot, double v)
+	{
+		q[slot]=v;
+	}
+	
+	/**
+	 * Moves the Q-value at {@code slot} a fraction {@code alpha} of the way towards {@code target}: 
+	 * Q = (1-alpha)*Q + alpha*target. This is the Q-learning update.
+	 */
+	public void update(int slot, double alpha, double target)
+	{
+		q[slot]=(1-alpha)*q[slot]+alpha*target;
+	}
+	
+	/**
+	 * Adds {@code delta} to the Q-value at {@code slot}, e.g. a TD error weighted by an eligibility trace.
+	 */
+	public void add(int slot, double delta)
+	{
+		q[slot]+=delta;
+	}
+	
+	public double getQValue(Game g, Move m)
+	{
+		return get(slot(g, 3*m.x+m.y));
+	}
+	
+	public void setQValue(Game g, Move m, double v)
+	{
+		set(slot(g, 3*m.x+m.y), v);
+	}
+	
+	/**
+	 * @param g
+	 * @return the largest Q-value over the empty cells of {@code g}, or 0 if {@code g} is terminal.
+	 */
+	public double maxQ(Game g)
+	{
+		if (g.isTerminal())
+			return 0.0;
+		
+		int base=index.getId(g)*9;
+		int[] map=Game.SYMMETRIES[index.symmetric ? g.canonicalTransform() : 0];
+		double max=-Double.MAX_VALUE;
+		for(int empty=g.emptyCells();empty!=0;empty&=empty-1) {
+			double v=get(base+map[Integer.numberOfTrailingZeros(empty)]);
+			if (v>max)
+				max=v;
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * @param id a state id in {@link #getIndex()}
+	 * @return the largest Q-value over the empty cells of the state, or 0 if it is terminal. Since the index stores 
+	 * canonical games in symmetric mode, no mapping is needed here.
+	 */
+	public double maxQ(int id)
+	{
+		Game g=index.games[id];
+		if (g.isTerminal())
+			return 0.0;
+		
+		int base=id*9;
+		double max=-Double.MAX_VALUE;
+		for(int empty=g.emptyCells();empty!=0;empty&=empty-1) {
+			double v=get(base+Integer.numberOfTrailingZeros(empty));
+			if (v>max)
+				max=v;
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * @param g
+	 * @return the empty cell of {@code g} with the largest Q-value (the lowest such cell if several are equally good), 
+	 * or -1 if {@code g} is terminal.
+	 */
+	public int bestCell(Game g)
+	{
+		if (g.isTerminal())
+			return -1;
+		
+		int base=index.getId(g)*9;
+		int[] map=Game.SYMMETRIES[index.symmetric ? g.canonicalTransform() : 0];
+		double max=-Double.MAX_VALUE;
+		int best=-1;
+		for(int empty=g.emptyCells();empty!=0;empty&=empty-1) {
+			int cell=Integer.numberOfTrailingZeros(empty);
+			double v=get(base+map[cell]);
+			if (v>max) {
+				max=v;
+				best=cell;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * @return a copy of this table as it is now, over the same index, e.g. to act on while this one keeps learning.
+	 */
+	public DenseQTable snapshot()
+	{
+		double[] copy=new double[index.size()*9];
+		for(int slot=0;slot<copy.length;slot++)
+			copy[slot]=get(slot);
+		
+		return new DenseQTable(index, copy);
+	}
+
+}
@@ -0,0 +1,69 @@
+package ticTacToe;
+
+/**
+ * Sparse eligibility traces for Watkins's Q(lambda): only the (s, a) pairs visited in the current episode have a
+ * non-zero trace, so the traces are kept as a short list of {@link DenseQTable#slot}s and their values rather than as
+ * a table the size of the Q-Table. X plays at most 5 moves in a game, so the list never grows past a few entries and
+ * {@link #clear} is O(1).
+ * @author ae187
+ *
+ */
+class EligibilityTraces {
+
+	final int[] slots;
+	final double[] values;
+
+	/**
+	 * the number of slots with a trace
+	 */
+	int size=0;
+
+	EligibilityTraces()
+	{
+		//at most one (s, a) per cell in an episode, since a game never returns to an earlier state
+		this.slots=new int[9];
+		this.values=new double[9];
+	}
+
+	/**
+	 * Sets the trace of {@code slot} to 1 (replacing traces).
+	 */
+	void visit(int slot)
+	{
+		for(int i=0;i<size;i++)
+			if (slots[i]==slot)
+			{
+				values[i]=1.0;
+				return;
+			}
+
+		slots[size]=slot;
+		values[size]=1.0;
+		size++;
+	}
+
+	/**
+	 * Moves every traced Q-value by alpha*delta*trace: the TD error of the latest step, applied to all the earlier
+	 * (s, a) pairs in proportion to their traces.
+	 */
+	void update(DenseQTable qTable, double alpha, double delta)
+	{
+		for(int i=0;i<size;i++)
+			qTable.add(slots[i], alpha*delta*values[i]);
+	}
+
+	/**
+	 * Multiplies every trace by {@code factor}, i.e. gamma*lambda.
+	 */
+	void decay(double factor)
+	{
+		for(int i=0;i<size;i++)
+			values[i]*=factor;
+	}
+
+	void clear()
+	{
+		size=0;
+	}
+
+}
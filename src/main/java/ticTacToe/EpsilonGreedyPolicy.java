@@ -1,13 +1,153 @@
 package ticTacToe;
 
+
+import java.util.SplittableRandom;
+
 /**
- * to do for next year
+ * An epsilon-greedy policy over a {@link DenseQTable}: with probability epsilon it plays a random empty cell, and
+ * otherwise the empty cell with the largest Q-value. Both are picked straight from the empty-cell mask of the game
+ * ({@link Game#emptyCells()}), so choosing a cell allocates nothing.
+ *
+ * Epsilon can stay constant, or decay with the number of episodes played, from {@link #start} to {@link #end} over
+ * {@link #decayEpisodes} episodes: linearly, reaching {@code end} after {@code decayEpisodes} episodes, or
+ * exponentially, closing 1-1/e of the gap to {@code end} every {@code decayEpisodes} episodes. The trainer tells the
+ * policy which episode it is on with {@link #setEpisode}.
  * @author ae187
  *
  */
 public class EpsilonGreedyPolicy extends Policy {
-	
-	
-	
+
+	public enum Decay {CONSTANT, LINEAR, EXPONENTIAL}
+
+	final DenseQTable qTable;
+
+	final Decay decay;
+	final double start;
+	final double end;
+	final int decayEpisodes;
+
+	/**
+	 * the episode the trainer is on, and epsilon at that episode
+	 */
+	int episode=0;
+	double epsilon;
+
+	SplittableRandom random=RandomStreams.split();
+
+	/**
+	 * A policy with a constant epsilon.
+	 */
+	public EpsilonGreedyPolicy(DenseQTable qTable, double epsilon)
+	{
+		this(qTable, Decay.CONSTANT, epsilon, epsilon, 1);
+	}
+
+	/**
+	 * @param qTable the Q-values to be greedy with respect to. The policy reads them as they change.
+	 * @param decay how epsilon goes from {@code start} to {@code end}
+	 * @param start epsilon in the first episode
+	 * @param end the smallest epsilon
+	 * @param decayEpisodes the length of the decay, in episodes, see above
+	 */
+	public EpsilonGreedyPolicy(DenseQTable qTable, Decay decay, double start, double end, int decayEpisodes)
+	{
+		if (decayEpisodes<=0)
+			throw new IllegalArgumentException("decayEpisodes must be positive");
+
+		this.qTable=qTable;
+		this.decay=decay;
+		this.start=start;
+		this.end=end;
+		this.decayEpisodes=decayEpisodes;
+		this.epsilon=epsilon(0);
+	}
+
+	/**
+	 * @return epsilon in {@code episode}, according to the decay schedule
+	 */
+	public double epsilon(int episode)
+	{
+		switch (decay) {
+		case LINEAR:
+			if (episode>=decayEpisodes)
+				return end;
+			return start+(end-start)*episode/decayEpisodes;
+		case EXPONENTIAL:
+			return end+(start-end)*Math.exp(-(double)episode/decayEpisodes);
+		default:
+			return start;
+		}
+	}
+
+	/**
+	 * Sets the episode the trainer is on, and so the epsilon {@link #getMove} uses.
+	 */
+	public void setEpisode(int episode)
+	{
+		this.episode=episode;
+		this.epsilon=epsilon(episode);
+	}
+
+	public int getEpisode()
+	{
+		return episode;
+	}
+
+	/**
+	 * @return the epsilon of the current episode
+	 */
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	public DenseQTable getQTable()
+	{
+		return qTable;
+	}
+
+	/**
+	 * Replaces the stream of random numbers this policy draws from, see {@link RandomStreams}.
+	 */
+	public void setRandom(SplittableRandom random)
+	{
+		this.random=random;
+	}
+
+	/**
+	 * @return the cell to play in {@code g}, with the epsilon of the current episode
+	 */
+	public int selectCell(Game g)
+	{
+		return selectCell(qTable, g, epsilon, random);
+	}
+
+	/**
+	 * Picks an epsilon-greedy cell without allocating: a uniformly random empty cell with probability {@code epsilon},
+	 * otherwise {@link DenseQTable#bestCell}.
+	 * @param random the stream to draw from. Threads choosing moves at once must each pass their own.
+	 * @return a cell (3*x+y) of {@code g}, or -1 if {@code g} is terminal
+	 */
+	public static int selectCell(DenseQTable qTable, Game g, double epsilon, SplittableRandom random)
+	{
+		int empty=g.emptyCells();
+		if (empty==0 || g.isTerminal())
+			return -1;
+
+		if (random.nextDouble()<epsilon)
+			return Game.nthCell(empty, random.nextInt(Integer.bitCount(empty)));
+
+		return qTable.bestCell(g);
+	}
+
+	@Override
+	public Move getMove(Game g)
+	{
+		int cell=selectCell(g);
+		if (cell<0)
+			return null;
+
+		return Move.of(g.whoseTurn.getName(), cell);
+	}
 
 }
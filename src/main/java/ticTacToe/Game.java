@@ -36,8 +36,159 @@ public class Game {
 	 */
 	int state = 0;
 
+	/**
+	 * The position as two 9-bit bitboards, one for X's pieces and one for O's.
+	 * Cell (i,j) is bit {@code 3*i+j}, the same numbering the {@link HumanAgent}
+	 * uses. These are the authoritative representation of the board.
+	 */
+	int xBits = 0;
+	int oBits = 0;
+
+	/**
+	 * The bitboard with all nine cells occupied.
+	 */
+	static final int FULL = 0x1FF;
+
+	/**
+	 * The board part of {@link #hashCode()}: the nine cells read as a base 3 number
+	 * with cell 0 as the most significant digit. Updated in O(1) by every move, so
+	 * hashing a game never has to look at the board.
+	 */
+	int code = 0;
+
+	/**
+	 * POW3[k] is 3^k
+	 */
+	static final int[] POW3 = { 1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683, 59049 };
+
+	/**
+	 * The 8 symmetries of the board (rotations and reflections).
+	 * SYMMETRIES[t][cell] is the cell that {@code cell} is moved to by transform
+	 * {@code t}. Transform 0 is the identity, 1-3 rotate clockwise by 90, 180 and
+	 * 270 degrees, 4 and 5 flip the rows and the columns, 6 and 7 reflect in the
+	 * two diagonals.
+	 */
+	static final int[][] SYMMETRIES = new int[8][9];
+
+	/**
+	 * INVERSE_SYMMETRY[t] is the transform that undoes transform t.
+	 */
+	static final int[] INVERSE_SYMMETRY = { 0, 3, 2, 1, 4, 5, 6, 7 };
+
+	/**
+	 * TRANSFORMED_BITS[t][bits] is the bitboard {@code bits} under transform t.
+	 */
+	static final int[][] TRANSFORMED_BITS = new int[8][FULL + 1];
+
+	/**
+	 * BASE3[bits] is the sum of 3^(8-cell) over the cells set in {@code bits}, so
+	 * the board part of the hash is BASE3[xBits] + 2*BASE3[oBits].
+	 */
+	static final int[] BASE3 = new int[FULL + 1];
+
+	static {
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++) {
+				int cell = 3 * i + j;
+				SYMMETRIES[0][cell] = cell;
+				SYMMETRIES[1][cell] = 3 * j + (2 - i);
+				SYMMETRIES[2][cell] = 3 * (2 - i) + (2 - j);
+				SYMMETRIES[3][cell] = 3 * (2 - j) + i;
+				SYMMETRIES[4][cell] = 3 * (2 - i) + j;
+				SYMMETRIES[5][cell] = 3 * i + (2 - j);
+				SYMMETRIES[6][cell] = 3 * j + i;
+				SYMMETRIES[7][cell] = 3 * (2 - j) + (2 - i);
+			}
+
+		for (int bits = 0; bits <= FULL; bits++)
+			for (int cell = 0; cell < 9; cell++)
+				if ((bits & (1 << cell)) != 0) {
+					BASE3[bits] += POW3[8 - cell];
+					for (int t = 0; t < 8; t++)
+						TRANSFORMED_BITS[t][bits] |= 1 << SYMMETRIES[t][cell];
+				}
+	}
+
+	/**
+	 * A character view of the bitboards (' ', 'X' or 'O' per cell), kept in sync
+	 * on every move and returned by {@link #getBoard()}.
+	 */
 	char[][] board = new char[3][3];
 
+	/**
+	 * The eight winning lines as bitboards, in the order they have always been
+	 * checked by {@link #evaluateGameState()}: rows, then columns, then the two
+	 * diagonals. Written in octal, so each digit is one row of the board.
+	 */
+	static final int[] LINES = { 0007, 0070, 0700, 0111, 0222, 0444, 0421, 0124 };
+
+	/**
+	 * BOARD_INFO[code] describes the board with base 3 code {@code code} (see
+	 * {@link #code}), packed into 15 bits: bits 0-1 are its state (ONGOING, X_WON,
+	 * O_WON or DRAW, as {@link #evaluateGameState()} would set it), bits 2-10 the
+	 * bitboard of its empty cells and bits 11-14 the number of X's; the number of
+	 * O's is what is left. Built once, for all 3^9 boards, in about 38 KB.
+	 */
+	static final char[] BOARD_INFO = new char[POW3[9]];
+
+	static {
+		for (int c = 0; c < BOARD_INFO.length; c++) {
+			int xb = 0, ob = 0;
+			for (int cell = 8, rest = c; cell >= 0; cell--, rest /= 3) {
+				if (rest % 3 == 1)
+					xb |= 1 << cell;
+				else if (rest % 3 == 2)
+					ob |= 1 << cell;
+			}
+			BOARD_INFO[c] = (char) (status(xb, ob) | ((~(xb | ob) & FULL) << 2) | (Integer.bitCount(xb) << 11));
+		}
+	}
+
+	/**
+	 * The state of a board given as bitboards, checking the lines in the order of
+	 * {@link #LINES}. Only used to build {@link #BOARD_INFO}.
+	 */
+	private static int status(int xb, int ob) {
+		for (int line : LINES) {
+			if ((xb & line) == line)
+				return X_WON;
+			if ((ob & line) == line)
+				return O_WON;
+		}
+
+		return ((xb | ob) == FULL) ? DRAW : ONGOING;
+	}
+
+	/**
+	 * @return the state (ONGOING, X_WON, O_WON or DRAW) of the board with base 3
+	 *         code {@code code}
+	 */
+	static int statusOf(int code) {
+		return BOARD_INFO[code] & 3;
+	}
+
+	/**
+	 * @return the bitboard of the empty cells of the board with base 3 code
+	 *         {@code code}
+	 */
+	static int emptyCellsOf(int code) {
+		return (BOARD_INFO[code] >> 2) & FULL;
+	}
+
+	/**
+	 * @return the number of X's on the board with base 3 code {@code code}
+	 */
+	static int xCountOf(int code) {
+		return BOARD_INFO[code] >> 11;
+	}
+
+	/**
+	 * @return the number of O's on the board with base 3 code {@code code}
+	 */
+	static int oCountOf(int code) {
+		return 9 - Integer.bitCount(emptyCellsOf(code)) - xCountOf(code);
+	}
+
 	/**
 	 * the X agent
 	 */
@@ -117,6 +268,10 @@ public class Game {
 		this.whoseTurn = g.whoseTurn;
 		// WARNING: Currently Agents are not deep copied
 
+		this.xBits = g.xBits;
+		this.oBits = g.oBits;
+		this.code = g.code;
+		this.state = g.state;
 		for (int i = 0; i < 3; i++)
 			for (int j = 0; j < 3; j++)
 				this.board[i][j] = g.board[i][j];
@@ -125,26 +280,161 @@ public class Game {
 
 	public void initBoard() {
 		// fill the board with e's (empty cells)
+		xBits = 0;
+		oBits = 0;
+		code = 0;
 		for (int i = 0; i < 3; i++)
 			for (int j = 0; j < 3; j++)
 				board[i][j] = ' ';
 
 	}
 
+	/**
+	 * Puts {@code xo} ('X' or 'O') on the empty cell {@code cell}, updating both the
+	 * bitboards, the hash code and the character view. Does not re-evaluate the
+	 * game.
+	 */
+	void setCell(int cell, char xo) {
+		if (xo == 'X') {
+			xBits |= 1 << cell;
+			code += POW3[8 - cell];
+		} else {
+			oBits |= 1 << cell;
+			code += 2 * POW3[8 - cell];
+		}
+
+		board[cell / 3][cell % 3] = xo;
+	}
+
+	/**
+	 * Takes the piece off the occupied cell {@code cell}, undoing {@link #setCell}.
+	 * Does not re-evaluate the game.
+	 */
+	void clearCell(int cell) {
+		int bit = 1 << cell;
+		if ((xBits & bit) != 0) {
+			xBits &= ~bit;
+			code -= POW3[8 - cell];
+		} else {
+			oBits &= ~bit;
+			code -= 2 * POW3[8 - cell];
+		}
+
+		board[cell / 3][cell % 3] = ' ';
+	}
+
+	/**
+	 * Plays the move of the agent whose turn it is in {@code cell}, in place: the
+	 * board, the hash, the turn and the state are updated just as by
+	 * {@link #executeMove(Move)}, but nothing is allocated or checked beyond what
+	 * {@link #unmakeMove} needs to undo it exactly. For search, where
+	 * {@link #simulateMove(Move)} would copy the whole game for every move.
+	 * 
+	 * @param cell
+	 *            an empty cell (3*x+y) of an ongoing game
+	 */
+	public void makeMove(int cell) {
+		if (state != ONGOING)
+			throw new IllegalStateException("The game is over");
+		if (((xBits | oBits) & (1 << cell)) != 0)
+			throw new IllegalArgumentException("Cell " + cell + " is not empty");
+
+		setCell(cell, whoseTurn.getName());
+		whoseTurn = (whoseTurn == x) ? o : x;
+		evaluateGameState();
+	}
+
+	/**
+	 * Undoes {@link #makeMove}{@code (cell)}, which must be the last move made:
+	 * empties the cell and gives the turn back. Since moves can only be made in an
+	 * ongoing game, the game is ongoing again.
+	 * 
+	 * @param cell
+	 *            the cell of the last move
+	 */
+	public void unmakeMove(int cell) {
+		int last = (whoseTurn == x) ? oBits : xBits;
+		if ((last & (1 << cell)) == 0)
+			throw new IllegalArgumentException("Cell " + cell + " does not hold the last mover's piece");
+
+		clearCell(cell);
+		whoseTurn = (whoseTurn == x) ? o : x;
+		state = ONGOING;
+	}
+
+	/**
+	 * @return true if cell (i,j) is empty
+	 */
+	boolean isEmpty(int i, int j) {
+		return ((xBits | oBits) & (1 << (3 * i + j))) == 0;
+	}
+
+	/**
+	 * @return a bitboard with the bits of all the empty cells set.
+	 */
+	public int emptyCells() {
+		return ~(xBits | oBits) & FULL;
+	}
+
+	/**
+	 * @param bits
+	 *            a bitboard
+	 * @param n
+	 *            between 0 and the number of bits set, exclusive
+	 * @return the cell of the n-th lowest bit set in {@code bits}
+	 */
+	static int nthCell(int bits, int n) {
+		for (int i = 0; i < n; i++)
+			bits &= bits - 1;
+
+		return Integer.numberOfTrailingZeros(bits);
+	}
+
 	public boolean isLegal(Move m) {
 		if (m.x < 0 || m.x > 2 || m.y < 0 || m.y > 2)
 			return false;
 
-		if (m.who.getName() != whoseTurn.getName()) {
+		if (m.getPlayer() != whoseTurn.getName()) {
 			return false;
 		}
 
-		if (board[m.x][m.y] != ' ')
+		if (!isEmpty(m.x, m.y))
 			return false;
 
 		return true;
 	}
 
+	/**
+	 * Tells us whether {@code who} would complete a line by putting a piece on
+	 * (x,y), whether or not it is their turn. Used by the defensive policy to find
+	 * the opponent's winning cells without changing the game.
+	 * 
+	 * @param who
+	 *            'X' or 'O'
+	 * @return true if the move would win the game for {@code who}
+	 */
+	public boolean isWinningMove(char who, int x, int y) {
+		int bits = ((who == 'X') ? xBits : oBits) | (1 << (3 * x + y));
+		for (int line : LINES)
+			if ((bits & line) == line)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Visits the successors of this game in place, see {@link Successors}. For
+	 * search loops that would otherwise use {@link #getAllSuccessorGames()}.
+	 * 
+	 * @param successors
+	 *            a cursor to reuse, so that nothing is allocated
+	 * @return {@code successors}, positioned before the first successor
+	 */
+	public Successors successors(Successors successors) {
+		successors.reset(this);
+		return successors;
+	}
+
 	/**
 	 * 
 	 * @return All possible next game states from the current game state in one step
@@ -153,20 +443,18 @@ public class Game {
 	 */
 	public List<Game> getAllSuccessorGames() {
 		List<Game> result = new ArrayList<Game>();
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (board[i][j] == ' ') {
-					Game newGame = null;
-					try {
-						newGame = this.simulateMove(whoseTurn.getName(), i, j);
-					} catch (IllegalMoveException e) {
-						System.out.println(e.getMessage());
-						e.printStackTrace();
-					}
-					// System.out.println("Adding:\n"+newGame);
-					result.add(newGame);
-				}
+		for (int empty = emptyCells(); empty != 0; empty &= empty - 1) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			Game newGame = null;
+			try {
+				newGame = this.simulateMove(whoseTurn.getName(), cell / 3, cell % 3);
+			} catch (IllegalMoveException e) {
+				System.out.println(e.getMessage());
+				e.printStackTrace();
 			}
+			// System.out.println("Adding:\n"+newGame);
+			result.add(newGame);
+		}
 
 		return result;
 
@@ -205,6 +493,30 @@ public class Game {
 		return result;
 	}
 
+	/**
+	 * Like {@link #generateAllValidGames(char)}, but if {@code canonicalOnly} is
+	 * true only returns one game out of every set of games that are rotations or
+	 * reflections of each other: the one that is its own {@link #canonical()} form.
+	 * 
+	 * @param xo
+	 *            specifies whose turn it should be in the resulting games.
+	 * @param canonicalOnly
+	 *            whether to leave out non-canonical games
+	 * @return
+	 */
+	public static List<Game> generateAllValidGames(char xo, boolean canonicalOnly) {
+		List<Game> all = generateAllValidGames(xo);
+		if (!canonicalOnly)
+			return all;
+
+		List<Game> result = new ArrayList<Game>();
+		for (Game g : all)
+			if (g.canonicalHashCode() == g.hashCode())
+				result.add(g);
+
+		return result;
+	}
+
 	/**
 	 * returns a list of all available moves by the agent whose turn it is.
 	 * 
@@ -216,11 +528,10 @@ public class Game {
 		if (getState() != ONGOING)
 			return possibleMoves;
 
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (getBoard()[i][j] == ' ')
-					possibleMoves.add(new Move(whoseTurn, i, j));
-			}
+		for (int empty = emptyCells(); empty != 0; empty &= empty - 1) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			possibleMoves.add(Move.of(whoseTurn.getName(), cell));
+		}
 
 		return possibleMoves;
 
@@ -238,16 +549,21 @@ public class Game {
 		if (getState() != ONGOING)
 			return possibleMoves;
 
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (getBoard()[i][j] == ' ')
-					possibleMoves.add(new Move((whoseTurn.getName() == 'X') ? 'O' : 'X', i, j));
-			}
+		char opponent = (whoseTurn.getName() == 'X') ? 'O' : 'X';
+		for (int empty = emptyCells(); empty != 0; empty &= empty - 1) {
+			int cell = Integer.numberOfTrailingZeros(empty);
+			possibleMoves.add(Move.of(opponent, cell));
+		}
 
 		return possibleMoves;
 
 	}
 
+	/**
+	 * @return the board as characters (' ', 'X' or 'O'). This is a read-only view
+	 *         of the bitboards: writing to it does not change the game, use
+	 *         {@link #executeMove(Move)} or {@link #simulateMove(Move)} instead.
+	 */
 	public char[][] getBoard() {
 		return board;
 	}
@@ -276,113 +592,14 @@ public class Game {
 	 */
 	public int evaluateGameState() {
 
-		// checking columns
-		if (board[0][0] != ' ' && board[0][0] == board[0][1] && board[0][1] == board[0][2]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[1][0] != ' ' && board[1][0] == board[1][1] && board[1][1] == board[1][2]) {
-			if (board[1][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[2][0] != ' ' && board[2][0] == board[2][1] && board[2][1] == board[2][2]) {
-			if (board[2][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		// checking rows
-
-		if (board[0][0] != ' ' && board[0][0] == board[1][0] && board[1][0] == board[2][0]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[0][1] != ' ' && board[0][1] == board[1][1] && board[1][1] == board[2][1]) {
-			if (board[0][1] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-		if (board[0][2] != ' ' && board[0][2] == board[1][2] && board[1][2] == board[2][2]) {
-			if (board[0][2] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		// checking diagnols
-
-		if (board[0][0] != ' ' && board[0][0] == board[1][1] && board[1][1] == board[2][2]) {
-			if (board[0][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		if (board[2][0] != ' ' && board[2][0] == board[1][1] && board[1][1] == board[0][2]) {
-			if (board[2][0] == 'X')
-				this.state = X_WON;
-			else
-				this.state = O_WON;
-
-			return this.state;
-
-		}
-
-		boolean spacesLeft = false;
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				if (board[i][j] == ' ') {
-					spacesLeft = true;
-					break;
-
-				}
-			}
-
-		if (spacesLeft)
-			this.state = ONGOING;
-		else
-			this.state = DRAW;
-
+		// one lookup: the table holds the state of every board
+		this.state = statusOf(code);
 		return this.state;
 
 	}
 
 	private int count(char xo) {
-		int count = 0;
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++)
-				if (board[i][j] == xo)
-					count++;
-		return count;
+		return (xo == 'X') ? xCountOf(code) : oCountOf(code);
 	}
 
 	/**
@@ -418,7 +635,7 @@ public class Game {
 	 * @return
 	 */
 	public Game simulateMove(char who, int x, int y) throws IllegalMoveException {
-		Move m = new Move(who, x, y);
+		Move m = Move.of(who, x, y);
 		return simulateMove(m);
 
 	}
@@ -431,20 +648,20 @@ public class Game {
 	 * @return the Game after the move has been executed.
 	 */
 	public Game simulateMove(Move m) throws IllegalMoveException {
-		if (whoseTurn == x && m.who.getName() != 'X')
+		if (whoseTurn == x && m.getPlayer() != 'X')
 			throw new IllegalMoveException("it is not x's turn");
 
-		if (whoseTurn == o && m.who.getName() != 'O')
+		if (whoseTurn == o && m.getPlayer() != 'O')
 			throw new IllegalMoveException("it is not o's turn");
 
-		if (board[m.x][m.y] != ' ')
+		if (!isEmpty(m.x, m.y))
 			throw new IllegalMoveException("Invalid move. The square is " + m);
 
 		Game copy = clone();
-		copy.board[m.x][m.y] = m.who.getName();
-		if (m.who.getName() == 'X')
+		copy.setCell(3 * m.x + m.y, m.getPlayer());
+		if (m.getPlayer() == 'X')
 			copy.whoseTurn = copy.o;
-		else if (m.who.getName() == 'O')
+		else if (m.getPlayer() == 'O')
 			copy.whoseTurn = copy.x;
 		else
 			throw new IllegalArgumentException();
@@ -461,19 +678,19 @@ public class Game {
 	 * @param m
 	 */
 	public void executeMove(Move m) throws IllegalMoveException {
-		if (whoseTurn == x && m.who.getName() != 'X')
+		if (whoseTurn == x && m.getPlayer() != 'X')
 			throw new IllegalMoveException("it is not O's turn");
 
-		if (whoseTurn == o && m.who.getName() != 'O')
+		if (whoseTurn == o && m.getPlayer() != 'O')
 			throw new IllegalMoveException("it is not X's turn");
 
-		if (board[m.x][m.y] != ' ')
+		if (!isEmpty(m.x, m.y))
 			throw new IllegalMoveException("Invalid move. The location (" + m.x + "," + m.y + ") is not empty");
 
-		board[m.x][m.y] = m.who.getName();
+		setCell(3 * m.x + m.y, m.getPlayer());
 		if (whoseTurn.getName() == 'X')
 			whoseTurn = o;
-		else if (m.who.getName() == 'O')
+		else if (m.getPlayer() == 'O')
 			whoseTurn = x;
 		else
 			throw new IllegalArgumentException();
@@ -494,7 +711,7 @@ public class Game {
 	 *            the y coordinate of the move (between 0 and 2 inclusive)
 	 */
 	public void executeMove(char who, int x, int y) throws IllegalMoveException {
-		Move m = new Move(who, x, y);
+		Move m = Move.of(who, x, y);
 		executeMove(m);
 
 	}
@@ -564,27 +781,9 @@ public class Game {
 		// ' ' ->0
 		// 'X' ->1
 		// 'O' ->2
-		String s = "";
-		for (int i = 0; i < 3; i++)
-			for (int j = 0; j < 3; j++) {
-				switch (board[i][j]) {
-				case 'X':
-					s += "1";
-					break;
-				case 'O':
-					s += "2";
-					break;
-				case ' ':
-					s += "0";
-					break;
-				}
-
-			}
-		// also encode whose turn it is. Either 1 or 2 (x or o)
-
-		s += (whoseTurn == x) ? "1" : "2";
-
-		return Integer.parseInt(s, 3);
+		// the board digits are kept up to date in code; append whose turn it is as
+		// the last digit. Either 1 or 2 (x or o)
+		return 3 * code + ((whoseTurn == x) ? 1 : 2);
 
 	}
 
@@ -602,46 +801,119 @@ public class Game {
 
 		Game g = new Game();
 
-		String s1 = Integer.toString(hash, 3);
-
-		if (s1.charAt(s1.length() - 1) == '0')
+		// the last digit is whose turn it is
+		int turn = hash % 3;
+		if (turn == 0)
 			return null;
 
-		// add leading 0's
-		String s = new String(s1);
-
-		for (int i = 0; i < 10 - s1.length(); i++) {
-			s = "0" + s;
-		}
-		// System.out.println("Intermediate string:"+s);
-		// set whose turn
-		if (s.charAt(s.length() - 1) == '1')
+		if (turn == 1)
 			g.whoseTurn = g.x;
-		else if (s.charAt(s.length() - 1) == '2')
+		else
 			g.whoseTurn = g.o;
 
-		for (int l = s.length() - 2; l >= 0; l--) {
-			int i = (int) l / 3;
-			int j = (int) l % 3;
-			switch (s.charAt(l)) {
-			case '0':
-				g.board[i][j] = ' ';
+		// then the cells, least significant (cell 8) first
+		int digits = hash / 3;
+		for (int l = 8; l >= 0; l--) {
+			switch (digits % 3) {
+			case 0:
 				break;
-			case '1':
-				g.board[i][j] = 'X';
+			case 1:
+				g.setCell(l, 'X');
 				break;
-			case '2':
-				g.board[i][j] = 'O';
+			case 2:
+				g.setCell(l, 'O');
 				break;
 			default:
 				throw new IllegalStateException("this shouldn't happen!");
 
 			}
+			digits /= 3;
 		}
 
 		return g;
 	}
 
+	/**
+	 * The hash code of the canonical form of this game: the smallest
+	 * {@link #hashCode()} among its 8 rotations and reflections. Games that are
+	 * symmetric to each other have the same canonical hash code.
+	 * 
+	 * @return the canonical hash code
+	 */
+	public int canonicalHashCode() {
+		return 3 * canonicalCode(canonicalTransform()) + ((whoseTurn == x) ? 1 : 2);
+	}
+
+	/**
+	 * @return the transform (an index into {@link #SYMMETRIES}) that takes this
+	 *         game to its canonical form. The smallest such transform if there are
+	 *         several.
+	 */
+	public int canonicalTransform() {
+		int best = 0;
+		int bestCode = code;
+		for (int t = 1; t < 8; t++) {
+			int c = canonicalCode(t);
+			if (c < bestCode) {
+				bestCode = c;
+				best = t;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * @return the board part of the hash code of this game under transform t
+	 */
+	private int canonicalCode(int t) {
+		return BASE3[TRANSFORMED_BITS[t][xBits]] + 2 * BASE3[TRANSFORMED_BITS[t][oBits]];
+	}
+
+	/**
+	 * Returns a copy of this game with the board rotated/reflected by transform t.
+	 * Agents, whose turn it is, and the game state are the same as in this game.
+	 * 
+	 * @param t
+	 *            the transform, between 0 and 7 inclusive
+	 * @return the transformed game
+	 */
+	public Game transform(int t) {
+		Game g = new Game(this);
+		g.initBoard();
+		for (int cell = 0; cell < 9; cell++) {
+			if ((xBits & (1 << cell)) != 0)
+				g.setCell(SYMMETRIES[t][cell], 'X');
+			else if ((oBits & (1 << cell)) != 0)
+				g.setCell(SYMMETRIES[t][cell], 'O');
+		}
+
+		return g;
+	}
+
+	/**
+	 * @return the canonical form of this game, i.e. the rotation/reflection of it
+	 *         whose hash code is {@link #canonicalHashCode()}
+	 */
+	public Game canonical() {
+		return transform(canonicalTransform());
+	}
+
+	/**
+	 * Maps move m through transform t, e.g. to take a move chosen in the canonical
+	 * form of a game back to the game itself using the inverse transform.
+	 * 
+	 * @param m
+	 *            the move
+	 * @param t
+	 *            the transform, between 0 and 7 inclusive
+	 * @return the transformed move, made by the same agent
+	 */
+	public static Move transformMove(Move m, int t) {
+		int cell = SYMMETRIES[t][3 * m.x + m.y];
+		return Move.of(m.player, cell);
+	}
+
 	public boolean equals(Object other) {
 		if (other == null)
 			return false;
@@ -0,0 +1,115 @@
+package ticTacToe;
+
+/**
+ * Exact, incremental policy evaluation on a {@link CompiledMDP}, for {@link PolicyIterationAgent} in incremental mode.
+ * 
+ * It keeps a set of dirty states: the states whose move has changed since the last evaluation. Evaluating the policy 
+ * then only backs up the dirty states and, whenever a value actually changes, the states that depend on it (found 
+ * through the predecessor lists of the model, the reverse of the transition graph). Because every move adds a piece 
+ * to the board, a state only depends on states with fewer empty cells, so dirty states are processed in order of 
+ * their number of empty cells, fewest first: each one is backed up at most once, after everything it depends on, and 
+ * the values are exact. The first evaluation touches every state; later ones, where a policy improvement step only 
+ * changed a few moves, touch just those and their ancestors.
+ * @author ae187
+ *
+ */
+public class IncrementalPolicyEvaluation {
+	
+	final CompiledMDP model;
+	
+	/**
+	 * the states each state's value is backed up into, see {@link CompiledMDP#predecessors()}
+	 */
+	final CompiledMDP.Predecessors predecessors;
+	
+	/**
+	 * state id -> number of empty cells, which orders the evaluation
+	 */
+	final int[] layer;
+	
+	/**
+	 * dirty states, bucketed by {@link #layer}: bucket[e][0] to bucket[e][bucketSize[e]-1]
+	 */
+	final int[][] bucket=new int[10][];
+	final int[] bucketSize=new int[10];
+	
+	final boolean[] dirty;
+	
+	public IncrementalPolicyEvaluation(CompiledMDP model)
+	{
+		this.model=model;
+		this.predecessors=model.predecessors();
+		
+		StateIndex index=model.getIndex();
+		int n=index.size();
+		layer=new int[n];
+		dirty=new boolean[n];
+		
+		int[] count=new int[10];
+		for(int id=0;id<n;id++) {
+			layer[id]=Integer.bitCount(index.getGame(id).emptyCells());
+			count[layer[id]]++;
+		}
+		for(int e=0;e<10;e++)
+			bucket[e]=new int[count[e]];
+	}
+	
+	/**
+	 * Marks state {@code id} as needing a backup at the next {@link #evaluate}, e.g. because its move changed.
+	 * @param id
+	 */
+	public void markDirty(int id)
+	{
+		if (!dirty[id]) {
+			dirty[id]=true;
+			bucket[layer[id]][bucketSize[layer[id]]++]=id;
+		}
+	}
+	
+	/**
+	 * Marks every non-terminal state as dirty, so that the next {@link #evaluate} is a full evaluation.
+	 */
+	public void markAll()
+	{
+		for(int id=0;id<layer.length;id++)
+			if (model.actionStart[id]<model.actionStart[id+1])
+				markDirty(id);
+	}
+	
+	/**
+	 * Brings {@code values} up to date with the policy {@code policyActions} (the action of each state, -1 for terminal
+	 * states), backing up only dirty states and the states whose values depend on a changed value.
+	 * @param policyActions
+	 * @param values
+	 * @param discount
+	 * @return the number of backups done
+	 */
+	public long evaluate(int[] policyActions, double[] values, double discount)
+	{
+		long backups=0;
+		
+		for(int e=0;e<10;e++) {
+			//predecessors always have more empty cells, so this bucket does not grow while it is being processed
+			for(int i=0;i<bucketSize[e];i++) {
+				int id=bucket[e][i];
+				dirty[id]=false;
+				
+				int a=policyActions[id];
+				if (a<0)
+					continue;
+				
+				double value=model.qValue(a, values, discount);
+				backups++;
+				if (value!=values[id]) {
+					values[id]=value;
+					for(int p=predecessors.start[id];p<predecessors.start[id+1];p++)
+						markDirty(predecessors.ids[p]);
+				}
+			}
+			bucketSize[e]=0;
+		}
+		
+		return backups;
+	}
+
+}
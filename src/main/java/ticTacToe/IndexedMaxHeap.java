@@ -0,0 +1,116 @@
+package ticTacToe;
+
+/**
+ * A binary max-heap of the integers 0 to n-1 (e.g. state ids), each with a double priority, backed by primitive 
+ * arrays. Each integer is in the heap at most once; pushing one that is already there only raises its priority.
+ * @author ae187
+ *
+ */
+class IndexedMaxHeap {
+	
+	/**
+	 * the heap itself: heap[0] has the highest priority
+	 */
+	private final int[] heap;
+	
+	/**
+	 * position of each integer in {@link #heap}, or -1 if it is not in the heap
+	 */
+	private final int[] pos;
+	
+	private final double[] priority;
+	
+	private int size=0;
+	
+	IndexedMaxHeap(int n)
+	{
+		heap=new int[n];
+		pos=new int[n];
+		priority=new double[n];
+		for(int i=0;i<n;i++)
+			pos[i]=-1;
+	}
+	
+	boolean isEmpty()
+	{
+		return size==0;
+	}
+	
+	int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Adds {@code i} with priority {@code p}, or raises its priority to {@code p} if it is already in the heap with a 
+	 * lower one.
+	 */
+	void push(int i, double p)
+	{
+		if (pos[i]<0) {
+			heap[size]=i;
+			pos[i]=size;
+			priority[i]=p;
+			siftUp(size++);
+		}
+		else if (p>priority[i]) {
+			priority[i]=p;
+			siftUp(pos[i]);
+		}
+	}
+	
+	/**
+	 * Removes and returns the integer with the highest priority.
+	 */
+	int pop()
+	{
+		int top=heap[0];
+		pos[top]=-1;
+		size--;
+		if (size>0) {
+			heap[0]=heap[size];
+			pos[heap[0]]=0;
+			siftDown(0);
+		}
+		
+		return top;
+	}
+	
+	private void siftUp(int k)
+	{
+		int i=heap[k];
+		while (k>0) {
+			int parent=(k-1)>>>1;
+			if (priority[heap[parent]]>=priority[i])
+				break;
+			
+			heap[k]=heap[parent];
+			pos[heap[k]]=k;
+			k=parent;
+		}
+		heap[k]=i;
+		pos[i]=k;
+	}
+	
+	private void siftDown(int k)
+	{
+		int i=heap[k];
+		while (true) {
+			int child=2*k+1;
+			if (child>=size)
+				break;
+			
+			if (child+1<size && priority[heap[child+1]]>priority[heap[child]])
+				child++;
+			if (priority[heap[child]]<=priority[i])
+				break;
+			
+			heap[k]=heap[child];
+			pos[heap[k]]=k;
+			k=child;
+		}
+		heap[k]=i;
+		pos[i]=k;
+	}
+
+}
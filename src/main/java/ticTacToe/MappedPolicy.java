@@ -0,0 +1,31 @@
+package ticTacToe;
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link DensePolicy} loaded by {@link PolicyFile#load}, which reads each move's cell straight from the 
+ * memory-mapped file instead of from an array.
+ * @author ae187
+ *
+ */
+public class MappedPolicy extends DensePolicy {
+	
+	final ByteBuffer table;
+	final int offset;
+	
+	MappedPolicy(StateIndex index, ByteBuffer table, int offset)
+	{
+		super(index, (byte[])null);
+		this.table=table;
+		this.offset=offset;
+	}
+	
+	@Override
+	public int getCell(int id)
+	{
+		byte b=table.get(offset+id);
+		return b==NO_MOVE ? -1 : b;
+	}
+
+}
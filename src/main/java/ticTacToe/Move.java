@@ -2,63 +2,149 @@ package ticTacToe;
 
 /**
  * A move in the Tic-Tac-Toe game. If the game is modelled as an MDP, a Move is essentially an MDP Action.
+ *
+ * A move is identified by its player ('X' or 'O') and its cell (3*x+y), and is immutable. There are only 18 possible
+ * moves, so {@link #of(char, int)} returns one of 18 shared instances instead of allocating; use it rather than the
+ * constructors wherever moves are made in a loop.
  * @author ae187
  *
  */
 public class Move {
-	
+
+	/**
+	 * The agents that the shared moves are made by. They only carry the player's name, which can't be changed, since
+	 * every shared move refers to them.
+	 */
+	static final Agent X_AGENT=new PlayerAgent('X');
+	static final Agent O_AGENT=new PlayerAgent('O');
+
 	/**
-	 * can be either 'X', or 'O' 
+	 * MOVES[0][cell] is X's move in {@code cell}, MOVES[1][cell] O's.
 	 */
-	public Agent who;
-	public int x;
-	public int y;
-	
+	private static final Move[][] MOVES=new Move[2][9];
+
+	static {
+		for(int cell=0;cell<9;cell++) {
+			MOVES[0][cell]=new Move(X_AGENT, cell/3, cell%3);
+			MOVES[1][cell]=new Move(O_AGENT, cell/3, cell%3);
+		}
+	}
+
+	/**
+	 * who makes the move. Only its name, 'X' or 'O', counts: two moves by different agents with the same name are equal.
+	 */
+	public final Agent who;
+	public final int x;
+	public final int y;
+
+	/**
+	 * 'X' or 'O', the name of {@link #who} when the move was made. This, not {@link #who}, is what identifies the
+	 * player.
+	 */
+	final char player;
+
+	/**
+	 * 3*x+y
+	 */
+	final int cell;
+
 	public Move(char who, int x, int y)
 	{
-		if (who!='X' && who!='O')
-			throw new IllegalArgumentException("Can only be a move by X or by O");
-		
-		this.who=new Agent();
-		this.who.setName(who);
-		
-		if (x<0 || x>2 || y<0 || y>2)
-			throw new IllegalArgumentException("Invalid x or y coordinates");
-		this.x=x;
-		this.y=y;
-		
+		this(who=='X' ? X_AGENT : who=='O' ? O_AGENT : null, x, y);
 	}
-	
+
 	public Move(Agent who, int x, int y)
 	{
-		if (who.getName()!='X' && who.getName()!='O')
+		if (who==null || (who.getName()!='X' && who.getName()!='O'))
 			throw new IllegalArgumentException("Can only be a move by X or by O");
-		
+
 		this.who=who;
-		
+		this.player=who.getName();
+
 		if (x<0 || x>2 || y<0 || y>2)
 			throw new IllegalArgumentException("Invalid x or y coordinates");
 		this.x=x;
 		this.y=y;
-		
+		this.cell=3*x+y;
+
 	}
-	
+
 	public Move(int x, int y)
 	{
 		this('X', x, y);
-	
+
+	}
+
+	/**
+	 * An agent with a fixed name and no policy.
+	 */
+	private static final class PlayerAgent extends Agent {
+
+		PlayerAgent(char name)
+		{
+			this.name=name;
+		}
+
+		@Override
+		public void setName(char n)
+		{
+			if (n!=name)
+				throw new UnsupportedOperationException("The agent of the shared "+name+" moves can't be renamed");
+		}
 	}
-	
+
+	/**
+	 * @param player 'X' or 'O'
+	 * @param cell 3*x+y, between 0 and 8 inclusive
+	 * @return the shared move of {@code player} in {@code cell}
+	 */
+	public static Move of(char player, int cell)
+	{
+		if (player!='X' && player!='O')
+			throw new IllegalArgumentException("Can only be a move by X or by O");
+		if (cell<0 || cell>8)
+			throw new IllegalArgumentException("Invalid cell "+cell);
+
+		return MOVES[player=='X' ? 0 : 1][cell];
+	}
+
+	/**
+	 * @return the shared move of {@code player} at (x, y)
+	 */
+	public static Move of(char player, int x, int y)
+	{
+		if (x<0 || x>2 || y<0 || y>2)
+			throw new IllegalArgumentException("Invalid x or y coordinates");
+
+		return of(player, 3*x+y);
+	}
+
+	/**
+	 * @return 'X' or 'O'
+	 */
+	public char getPlayer()
+	{
+		return player;
+	}
+
+	/**
+	 * @return 3*x+y
+	 */
+	public int getCell()
+	{
+		return cell;
+	}
+
 	public String toString()
 	{
-		return who+"("+x+","+y+")";
+		return player+"("+x+","+y+")";
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((who == null) ? 0 : who.getName());
+		result = prime * result + player;
 		result = prime * result + x;
 		result = prime * result + y;
 		return result;
@@ -73,20 +159,11 @@ public class Move {
 		if (getClass() != obj.getClass())
 			return false;
 		Move other = (Move) obj;
-		if (this.who.getName()!=other.who.getName())
-			return false;
-		
-		if (x != other.x)
-			return false;
-		
-		if (y != other.y)
-			return false;
-		
-		return true;
+		return player == other.player && cell == other.cell;
 	}
-	
-	
-	
-	
+
+
+
+
 
 }
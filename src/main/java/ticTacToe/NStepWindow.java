@@ -0,0 +1,72 @@
+package ticTacToe;
+
+/**
+ * The last n (s, a, r) steps of an episode for n-step Q-learning, in primitive ring buffers. Once n steps are held,
+ * the oldest is backed up with the n-step return r_t + gamma*r_{t+1} + ... + gamma^(n-1)*r_{t+n-1} + gamma^n*maxQ(s_{t+n});
+ * at the end of the episode the steps left are backed up with their truncated returns.
+ * @author ae187
+ *
+ */
+class NStepWindow {
+
+	final int[] slots;
+	final double[] rewards;
+
+	/**
+	 * the position of the oldest step, and the number of steps held
+	 */
+	int head=0;
+	int count=0;
+
+	NStepWindow(int n)
+	{
+		this.slots=new int[n];
+		this.rewards=new double[n];
+	}
+
+	/**
+	 * Adds a step, and if the window is then full, backs up its oldest step towards the n-step return bootstrapped
+	 * from {@code nextMaxQ}, and drops it.
+	 * @param nextMaxQ maxQ(s') of the step added, 0 if s' is terminal
+	 */
+	void add(int slot, double reward, double nextMaxQ, DenseQTable qTable, double alpha, double discount)
+	{
+		int tail=(head+count)%slots.length;
+		slots[tail]=slot;
+		rewards[tail]=reward;
+		count++;
+
+		if (count==slots.length)
+			backupOldest(nextMaxQ, qTable, alpha, discount);
+	}
+
+	/**
+	 * Backs up every step left, oldest first, with returns truncated at the current state: at the end of an episode
+	 * (with {@code maxQ}=0, since the state is terminal), or before an exploratory move, whose rewards are not those
+	 * of the greedy policy the Q-values are learning about.
+	 * @param maxQ maxQ of the current state
+	 */
+	void flush(double maxQ, DenseQTable qTable, double alpha, double discount)
+	{
+		while (count>0)
+			backupOldest(maxQ, qTable, alpha, discount);
+	}
+
+	void backupOldest(double nextMaxQ, DenseQTable qTable, double alpha, double discount)
+	{
+		double target=nextMaxQ;
+		for(int i=count-1;i>=0;i--)
+			target=rewards[(head+i)%slots.length]+discount*target;
+
+		qTable.update(slots[head], alpha, target);
+		head=(head+1)%slots.length;
+		count--;
+	}
+
+	void clear()
+	{
+		head=0;
+		count=0;
+	}
+
+}
@@ -1,6 +1,8 @@
 package ticTacToe;
 
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 
 /**
@@ -44,16 +46,30 @@ public class Policy {
 	}
 	
 	/**
-	 * loads policy from file. One possible format for storing a policy is as a sequence of lines where each line
-	 * specifies the action/move determined by the policy in a particular game state. The game states should not
-	 * explicitly stored, only their hashes are stored. The {@link Game} object itself can be constructed using the 
-	 * {@link Game#inverseHash} method.
+	 * loads policy from file, written by {@link PolicyFile#write}, into the map: one entry for every game where it is 
+	 * X's turn and the file has a move. Use {@link PolicyFile#load} instead to read moves straight from the file 
+	 * without building a map.
 	 *  
 	 * @param file
+	 * @throws UncheckedIOException if the file can't be read or is not a valid policy file
 	 */
 	public Policy(String file)
 	{
-		/* implement this constructor to load a stored policy from file. */
+		MappedPolicy stored;
+		try {
+			stored=PolicyFile.load(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		StateIndex index=StateIndex.getInstance(false);
+		for(int id=0;id<index.size();id++)
+		{
+			Game g=index.getGame(id);
+			Move m=stored.getMove(g);
+			if (m!=null)
+				policy.put(g, m);
+		}
 		
 	}
 
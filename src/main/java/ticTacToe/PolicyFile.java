@@ -0,0 +1,134 @@
+package ticTacToe;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes policies in a compact binary format, so that a solved policy can be loaded in milliseconds instead
+ * of being trained again. All numbers are big-endian:
+ * 
+ * <pre>
+ * offset size
+ *  0     4    magic, the bytes "TTTP"
+ *  4     4    format version, {@link #VERSION}
+ *  8     4    variant: {@link #FULL}, one move per {@link StateIndex} id, or {@link #SYMMETRIC}, one move per id of the
+ *             symmetric index, for the canonical game
+ *  12    4    the number of states n, which must be the size of that index
+ *  16    8    the CRC-32 of the table
+ *  24    n    the table: for each state id, the cell (3*x+y) of the policy's move, or {@link DensePolicy#NO_MOVE}
+ * </pre>
+ * 
+ * {@link #load} memory-maps the file with {@link FileChannel#map}, so several JVMs loading the same file share its 
+ * pages in the OS page cache.
+ * @author ae187
+ *
+ */
+public class PolicyFile {
+	
+	static final int MAGIC=0x54545450;
+	static final int VERSION=1;
+	
+	static final int FULL=0;
+	static final int SYMMETRIC=1;
+	
+	static final int HEADER_SIZE=24;
+	
+	private PolicyFile()
+	{
+	}
+	
+	/**
+	 * Writes {@code policy} to {@code file}: its move in every state where it is X's turn. A {@link DensePolicy} over a
+	 * symmetric index is written as the symmetric variant, any other policy as the full one.
+	 * @throws IOException
+	 */
+	public static void write(Policy policy, String file) throws IOException
+	{
+		DensePolicy dense=(policy instanceof DensePolicy) ? (DensePolicy)policy : null;
+		boolean symmetric=(dense!=null) && dense.getIndex().isSymmetric();
+		StateIndex index=(dense!=null) ? dense.getIndex() : StateIndex.getInstance(symmetric);
+		int n=index.size();
+		
+		ByteBuffer buffer=ByteBuffer.allocate(HEADER_SIZE+n);
+		buffer.position(HEADER_SIZE);
+		for(int id=0;id<n;id++)
+		{
+			Game g=index.getGame(id);
+			if (dense!=null)
+			{
+				//already in the file's form, canonical cells included
+				int cell=g.isTerminal() ? -1 : dense.getCell(id);
+				buffer.put(cell<0 ? DensePolicy.NO_MOVE : (byte)cell);
+				continue;
+			}
+			Move m=g.isTerminal() ? null : policy.getMove(g);
+			buffer.put(m==null ? DensePolicy.NO_MOVE : (byte)(3*m.x+m.y));
+		}
+		
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, symmetric ? SYMMETRIC : FULL);
+		buffer.putInt(12, n);
+		buffer.putLong(16, checksum(buffer, n));
+		
+		buffer.position(0);
+		try (FileChannel channel=FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, 
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+	
+	/**
+	 * Memory-maps a policy file and checks its header and checksum.
+	 * @return a policy that reads its moves straight from the mapped file
+	 * @throws IOException if the file can't be read, or is not a valid policy file of this version
+	 */
+	public static MappedPolicy load(String file) throws IOException
+	{
+		Path path=Paths.get(file);
+		MappedByteBuffer buffer;
+		try (FileChannel channel=FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size()<HEADER_SIZE)
+				throw new IOException(file+" is too short to be a policy file");
+			//the mapping stays valid after the channel is closed
+			buffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		
+		if (buffer.getInt(0)!=MAGIC)
+			throw new IOException(file+" is not a policy file");
+		if (buffer.getInt(4)!=VERSION)
+			throw new IOException(file+" has policy format version "+buffer.getInt(4)+", expected "+VERSION);
+		
+		int variant=buffer.getInt(8);
+		if (variant!=FULL && variant!=SYMMETRIC)
+			throw new IOException(file+" has unknown policy variant "+variant);
+		
+		StateIndex index=StateIndex.getInstance(variant==SYMMETRIC);
+		int n=buffer.getInt(12);
+		if (n!=index.size() || buffer.capacity()!=HEADER_SIZE+n)
+			throw new IOException(file+" has "+n+" states, expected "+index.size());
+		if (buffer.getLong(16)!=checksum(buffer, n))
+			throw new IOException(file+" is corrupt: checksum mismatch");
+		
+		return new MappedPolicy(index, buffer, HEADER_SIZE);
+	}
+	
+	static long checksum(ByteBuffer buffer, int n)
+	{
+		CRC32 crc=new CRC32();
+		ByteBuffer table=buffer.duplicate();
+		table.position(HEADER_SIZE);
+		table.limit(HEADER_SIZE+n);
+		crc.update(table);
+		return crc.getValue();
+	}
+
+}
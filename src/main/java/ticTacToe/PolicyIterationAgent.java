@@ -1,11 +1,13 @@
 package ticTacToe;
 
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Set;
+import java.util.function.Supplier;
 /**
  * A policy iteration agent. You should implement the following methods:
  * (1) {@link PolicyIterationAgent#evaluatePolicy}: this is the policy evaluation step from your lectures
@@ -41,14 +43,90 @@ public class PolicyIterationAgent extends Agent {
 	TTTMDP mdp;
 	
 	/**
-	 * loads the policy from file if one exists. Policies should be stored in .pol files directly under the project folder.
+	 * Whether to run in symmetry-reduced mode, where only canonical games (see {@link Game#canonical()}) are stored in 
+	 * {@link #policyValues} and {@link #curPolicy}, and the resulting policy is a {@link DensePolicy} over the
+	 * symmetric {@link StateIndex}, which maps the moves of canonical games back to the game being played.
+	 */
+	boolean symmetric=false;
+	
+	/**
+	 * Whether to run in dense mode, where the values and the current policy are kept in {@link #values} and 
+	 * {@link #policyActions}, primitive arrays indexed by the {@link StateIndex} ids of the games, while training, and 
+	 * the MDP is compiled into a {@link CompiledMDP}. {@link #policyValues} and {@link #curPolicy} are filled in from 
+	 * them at the end.
+	 */
+	boolean dense=false;
+	
+	/**
+	 * The state index used in dense mode
+	 */
+	StateIndex index;
+	
+	/**
+	 * The values of states under the current policy in dense mode, indexed by {@link #index} id.
+	 */
+	double[] values;
+	
+	/**
+	 * The compiled MDP used in dense mode
+	 */
+	CompiledMDP model;
+	
+	/**
+	 * The current policy in dense mode: the {@link #model} action chosen in each state, indexed by {@link #index} id. 
+	 * {@link CompiledMDP#NO_ACTION} for terminal states.
+	 */
+	int[] policyActions;
+	
+	/**
+	 * The number of evaluation sweeps per policy improvement step. 0 means evaluate until the values converge 
+	 * (standard policy iteration); a positive number gives modified policy iteration.
+	 */
+	int evaluationSweeps=0;
+	
+	/**
+	 * Whether dense mode evaluates the policy incrementally, with an {@link IncrementalPolicyEvaluation} that only 
+	 * backs up the states whose move changed and the states that depend on them.
+	 */
+	boolean incremental=false;
+	
+	/**
+	 * The incremental evaluator used in incremental mode
+	 */
+	IncrementalPolicyEvaluation evaluator;
+	
+	/**
+	 * Told about every outer iteration, see {@link PolicyIterationListener}
+	 */
+	List<PolicyIterationListener> listeners=new ArrayList<PolicyIterationListener>();
+	
+	/**
+	 * Picks the initial random policy, see {@link RandomStreams}.
+	 */
+	SplittableRandom random=RandomStreams.split();
+	
+	/**
+	 * Statistics of the current outer iteration: evaluation sweeps, backups and policy changes.
+	 */
+	int sweeps;
+	long backups;
+	int policyChanges;
+	
+	/**
+	 * Whether the last call to {@link #evaluatePolicy} ran until the values converged.
+	 */
+	boolean evaluationConverged;
+	
+	/**
+	 * loads the policy from file if one exists, and otherwise trains the agent (or takes the solution from the 
+	 * {@link SolvedModelCache}). Policies are stored in {@link #getPolicyFileName()} directly under the project folder,
+	 * see {@link #savePolicyToFile}. A loaded agent has no values, only the policy.
 	 */
 	public PolicyIterationAgent() {
 		super();
 		this.mdp=new TTTMDP();
-		initValues();
-		initRandomPolicy();
-		train();
+		if (loadPolicyFromFile()==null)
+			solveCached();
 		
 		
 	}
@@ -72,9 +150,7 @@ public class PolicyIterationAgent extends Agent {
 		
 		this.discount=discountFactor;
 		this.mdp=new TTTMDP();
-		initValues();
-		initRandomPolicy();
-		train();
+		solveCached();
 	}
 	/**
 	 * Use this constructor to set the various parameters of the Tic-Tac-Toe MDP
@@ -88,10 +164,115 @@ public class PolicyIterationAgent extends Agent {
 	{
 		this.discount=discountFactor;
 		this.mdp=new TTTMDP(winningReward, losingReward, livingReward, drawReward);
-		initValues();
-		initRandomPolicy();
-		train();
+		solveCached();
+	}
+	
+	/**
+	 * Trains the agent from a random policy, unless an agent with the same MDP parameters has already done so in this 
+	 * process, in which case its solution is taken from the {@link SolvedModelCache}. Policy iteration always 
+	 * converges to the optimal policy, so the random starting policy doesn't matter. Either way the agent ends up with
+	 * the policy, the values in {@link #values} over {@link #index}, and {@link #policyValues} and {@link #curPolicy}
+	 * filled in as if it had trained itself.
+	 */
+	protected void solveCached()
+	{
+		SolvedModelCache.Key key=new SolvedModelCache.Key("policy-iteration", symmetric, discount, mdp);
+		SolvedModel model=SolvedModelCache.getInstance().get(key, new Supplier<SolvedModel>() {
+			public SolvedModel get()
+			{
+				initValues();
+				initRandomPolicy();
+				train();
+				return SolvedModel.fromMaps(StateIndex.getInstance(symmetric), policyValues, (DensePolicy)policy);
+			}
+		});
+		
+		this.index=model.getIndex();
+		this.values=model.copyValues();
+		super.policy=model.getPolicy();
+		if (this.policyValues.isEmpty())
+			model.fillMaps(this.policyValues, this.curPolicy);
+	}
+	
+	/**
+	 * Use this constructor to set the MDP model directly. It does not train the agent: set any options 
+	 * (e.g. {@link #setSymmetric}, {@link #setDense}, {@link #setEvaluationSweeps}, {@link #setIncremental}) and then 
+	 * call {@link #train()}.
+	 * @param mdp
+	 * @param discountFactor
+	 */
+	public PolicyIterationAgent(TTTMDP mdp, double discountFactor)
+	{
+		this.discount=discountFactor;
+		this.mdp=mdp;
+	}
+	
+	/**
+	 * Turns symmetry-reduced mode on or off. Must be set before the values and the random policy are initialised.
+	 * @param symmetric
+	 */
+	public void setSymmetric(boolean symmetric)
+	{
+		this.symmetric=symmetric;
+	}
+	
+	/**
+	 * Turns dense mode on or off, see {@link #dense}.
+	 * @param dense
+	 */
+	public void setDense(boolean dense)
+	{
+		this.dense=dense;
+	}
+	
+	/**
+	 * Turns modified policy iteration on or off: with {@code sweeps} > 0, each policy evaluation step does at most that 
+	 * many sweeps before the policy is improved again. Training still ends only once the policy is stable and an 
+	 * evaluation step has converged, so the final policy is the same. 0 turns it off.
+	 * @param sweeps
+	 */
+	public void setEvaluationSweeps(int sweeps)
+	{
+		this.evaluationSweeps=sweeps;
+	}
+	
+	/**
+	 * Turns incremental policy evaluation on or off, see {@link #incremental}. Only used in dense mode.
+	 * @param incremental
+	 */
+	public void setIncremental(boolean incremental)
+	{
+		this.incremental=incremental;
 	}
+	
+	/**
+	 * @param listener told about every outer iteration from now on
+	 */
+	public void addPolicyIterationListener(PolicyIterationListener listener)
+	{
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * @param g
+	 * @return the key under which the value of {@code g} is stored: {@code g} itself, or its canonical form in 
+	 * symmetry-reduced mode.
+	 */
+	Game key(Game g)
+	{
+		return symmetric ? g.canonical() : g;
+	}
+	
+	/**
+	 * @return the value of {@code g} under the current policy, from {@link #policyValues}, or 0 if it has none (e.g. 
+	 * the agent has not trained)
+	 */
+	public double getValue(Game g)
+	{
+		Double v=this.policyValues.get(key(g));
+		return (v==null) ? 0.0 : v;
+	}
+	
 	/**
 	 * Initialises the {@link #policyValues} map, and sets the initial value of all states to 0 
 	 * (V0 under some policy pi ({@link #curPolicy} from the lectures). Uses {@link Game#inverseHash} and {@link Game#generateAllValidGames(char)} to do this. 
@@ -99,7 +280,7 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	public void initValues()
 	{
-		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
+		List<Game> allGames=Game.generateAllValidGames('X', symmetric);//all valid games where it is X's turn, or it's terminal.
 		for(Game g: allGames)
 			this.policyValues.put(g, 0.0);
 		
@@ -116,8 +297,7 @@ public class PolicyIterationAgent extends Agent {
 		for(Game g: allGames) {
 			if(g.isTerminal() == false) {
 				List <Move> moves = g.getPossibleMoves(); //all valid moves of game g.
-				Random rand = new Random();
-				Move randomMove = moves.get(rand.nextInt(moves.size()));
+				Move randomMove = moves.get(this.random.nextInt(moves.size()));
 				this.curPolicy.put(g, randomMove);
 			}
 			
@@ -125,9 +305,29 @@ public class PolicyIterationAgent extends Agent {
 	}
 	
 	
+	/**
+	 * Dense mode version of {@link #initValues()} and {@link #initRandomPolicy()}: compiles the MDP, sets all values in 
+	 * {@link #values} to 0 and picks a random valid action for every non-terminal state in {@link #policyActions}.
+	 */
+	protected void initDense()
+	{
+		this.index=StateIndex.getInstance(symmetric);
+		this.model=this.mdp.compile(index);
+		int n=index.size();
+		this.values=new double[n];
+		this.policyActions=new int[n];
+		
+		for(int id=0;id<n;id++) {
+			int first=model.actionStart[id];
+			int last=model.actionStart[id+1];
+			policyActions[id] = (first==last) ? CompiledMDP.NO_ACTION : first+this.random.nextInt(last-first);
+		}
+	}
+	
 	/**
 	 * Performs policy evaluation steps until the maximum change in values is less than {@code delta}, in other words
-	 * until the values under the current policy converge. After running this method, 
+	 * until the values under the current policy converge (or until {@link #evaluationSweeps} sweeps have been done, in
+	 * modified policy iteration). After running this method, 
 	 * the {@link PolicyIterationAgent#policyValues} map should contain the values of each reachable state under the current policy. 
 	 * You should use the {@link TTTMDP} {@link PolicyIterationAgent#mdp} provided to do this.
 	 *
@@ -135,24 +335,28 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	protected void evaluatePolicy(double delta)
 	{
+		if (dense)
+		{
+			evaluatePolicyDense(delta);
+			return;
+		}
 		
 		boolean allConverge = false;
 		Set <Game> allGames = this.policyValues.keySet();
+		int sweepsDone = 0;
 		
-		while (allConverge == false) {
+		while (allConverge == false && (evaluationSweeps == 0 || sweepsDone < evaluationSweeps)) {
 			
-			allConverge = true;
+			//largest change in the value of any state in this sweep
+			double maxChange = 0;
 			
 			for(Game g: allGames) {
 				
-				double updateg = 9999;
-				
 				if(g.isTerminal() == false) {
 					
-					//get a valid random move of g
-					Move randomMove = this.curPolicy.get(g);
+					Move move = this.curPolicy.get(g);
 					double currentValue = 0;
-					List <TransitionProb> pro = this.mdp.generateTransitions(g, randomMove);
+					List <TransitionProb> pro = this.mdp.generateTransitions(g, move);
 					int s = pro.size();
 					
 					for (int j=0; j<s; ++j) {
@@ -160,39 +364,92 @@ public class PolicyIterationAgent extends Agent {
 						double probability = pro.get(j).prob;
 						double reward = pro.get(j).outcome.localReward;
 						Game sPrime = pro.get(j).outcome.sPrime;							
-						currentValue += probability*(reward + this.discount*this.policyValues.get(sPrime));
-						
-						//difference between policy value of g and the calculated one for g
-						double difference = this.policyValues.get(g) - currentValue;
-						//get the smallest difference
-						if (updateg > difference)
-                            updateg = difference;
+						currentValue += probability*(reward + this.discount*this.policyValues.get(key(sPrime)));
 						
 					} //close transitions for loop
 					
+					maxChange = Math.max(maxChange, Math.abs(currentValue - this.policyValues.get(g)));
 					this.policyValues.put(g, currentValue);
-					//if the difference of one g is larger than delta, then we haven't reach convergence of all the games yet
-					if (updateg > delta)
-						allConverge = false;
+					this.backups++;
 				
 				} //close if is Terminal
 				
 			} //close games for loop
+			
+			sweepsDone++;
+			//converged once no value changed by delta or more
+			allConverge = maxChange < delta;
 		
 		} //close while of convergence
+		
+		this.sweeps += sweepsDone;
+		this.evaluationConverged = allConverge;
 			
 	}
 		
 	
 	
+	/**
+	 * The same as {@link #evaluatePolicy(double)}, but on {@link #values} and {@link #policyActions}, using the compiled 
+	 * {@link #model}. Successor values are found by array index rather than by hashing {@link Game} objects.
+	 * @param delta
+	 */
+	protected void evaluatePolicyDense(double delta)
+	{
+		if (incremental) {
+			if (evaluator==null) {
+				evaluator=new IncrementalPolicyEvaluation(model);
+				evaluator.markAll();
+			}
+			
+			//exact in one pass over the dirty states
+			this.backups += evaluator.evaluate(policyActions, values, this.discount);
+			this.sweeps++;
+			this.evaluationConverged = true;
+			return;
+		}
+		
+		int n=index.size();
+		boolean allConverge = false;
+		int sweepsDone = 0;
+		
+		while (allConverge == false && (evaluationSweeps == 0 || sweepsDone < evaluationSweeps)) {
+			
+			double maxChange = 0;
+			
+			for(int id=0;id<n;id++) {
+				
+				int a=policyActions[id];
+				if (a<0)
+					continue;
+				
+				double currentValue = model.qValue(a, values, this.discount);
+				maxChange = Math.max(maxChange, Math.abs(currentValue - values[id]));
+				values[id] = currentValue;
+				this.backups++;
+			}
+			
+			sweepsDone++;
+			allConverge = maxChange < delta;
+		}
+		
+		this.sweeps += sweepsDone;
+		this.evaluationConverged = allConverge;
+	}
+	
 	/**This method should be run AFTER the {@link PolicyIterationAgent#evaluatePolicy} train method to improve the current policy according to 
 	 * {@link PolicyIterationAgent#policyValues}. You will need to do a single step of expectimax from each game (state) key in {@link PolicyIterationAgent#curPolicy} 
 	 * to look for a move/action that potentially improves the current policy. 
 	 * 
+	 * A state's move is only changed if another move is strictly better than it under the current values, so ties never
+	 * count as improvements.
+	 * 
 	 * @return true if the policy improved. Returns false if there was no improvement, i.e. the policy already returned the optimal actions.
 	 */
 	protected boolean improvePolicy()
 	{
+		if (dense)
+			return improvePolicyDense();
 		
 		Set <Game> allGames = this.curPolicy.keySet();
 		boolean policyChange = false;
@@ -202,7 +459,10 @@ public class PolicyIterationAgent extends Agent {
 				if(g.isTerminal() == false) {
 					
 					List<Move> moves = g.getPossibleMoves();
-					double maxValue = -9999;
+					Move current = this.curPolicy.get(g);
+					//-infinity, so that some move is always best however low the move values are
+					double currentMoveValue = Double.NEGATIVE_INFINITY;
+					double maxValue = Double.NEGATIVE_INFINITY;
                     Move maxMove = null;
 
 					for(Move m: moves) {
@@ -215,9 +475,12 @@ public class PolicyIterationAgent extends Agent {
 							double probability = pro.get(j).prob;
 							double reward = pro.get(j).outcome.localReward;
 							Game sPrime = pro.get(j).outcome.sPrime;							
-							currentValue += probability*(reward + this.discount*this.policyValues.get(sPrime));
+							currentValue += probability*(reward + this.discount*this.policyValues.get(key(sPrime)));
 						} //close transitions for loop
 						
+						if (m.equals(current))
+							currentMoveValue = currentValue;
+						
 						//get max value and optimal move
 						if (currentValue > maxValue) {
                             maxValue = currentValue;
@@ -226,10 +489,13 @@ public class PolicyIterationAgent extends Agent {
 		
 					} //close moves for loop
 					
-					//if the policy value of g is smaller than the calculated maximum value, then policy changes (there is no convergence)
-					if (this.policyValues.get(g) < maxValue) {
+					this.backups++;
+					
+					//if the current move of g is worse than the best one, then policy changes (there is no convergence)
+					if (currentMoveValue < maxValue) {
 						this.curPolicy.put(g, maxMove);
                         policyChange = true;
+                        this.policyChanges++;
 					} //close policy change if condition
 					
 				} //close if is terminal
@@ -239,6 +505,46 @@ public class PolicyIterationAgent extends Agent {
 		return policyChange;
 	}
 	
+	/**
+	 * The same as {@link #improvePolicy()}, but on {@link #values} and {@link #policyActions}, using the compiled 
+	 * {@link #model}.
+	 * @return true if the policy improved.
+	 */
+	protected boolean improvePolicyDense()
+	{
+		int n=index.size();
+		boolean policyChange = false;
+		
+		for(int id=0;id<n;id++) {
+			
+			int current=policyActions[id];
+			if (current==CompiledMDP.NO_ACTION)
+				continue;
+			
+			//a non-terminal state always has a best action, however low its action values
+			double maxValue = Double.NEGATIVE_INFINITY;
+			int maxAction = CompiledMDP.NO_ACTION;
+			for(int a=model.actionStart[id];a<model.actionStart[id+1];a++) {
+				double currentValue = model.qValue(a, values, this.discount);
+				if (currentValue > maxValue) {
+					maxValue = currentValue;
+					maxAction = a;
+				}
+			}
+			this.backups++;
+			
+			if (model.qValue(current, values, this.discount) < maxValue) {
+				policyActions[id] = maxAction;
+				policyChange = true;
+				this.policyChanges++;
+				if (evaluator!=null)
+					evaluator.markDirty(id);
+			}
+		}
+		
+		return policyChange;
+	}
+	
 	/**
 	 * The (convergence) delta
 	 */
@@ -251,15 +557,47 @@ public class PolicyIterationAgent extends Agent {
 	 */
 	public void train()
 	{
+		if (dense) {
+			if (this.values == null)
+				initDense();
+		} else {
+			if (this.policyValues.isEmpty())
+				initValues();
+			if (this.curPolicy.isEmpty())
+				initRandomPolicy();
+		}
+		
 		boolean policyChange = true;
+		int iteration = 0;
 		
-		//repeat steps until convergence (until policy doesn't change)
-		while (policyChange == true) {
+		//repeat steps until convergence (until policy doesn't change). In modified policy iteration the last
+		//evaluation must also have converged, or the values the policy was judged by are not yet accurate.
+		while (policyChange == true || evaluationConverged == false) {
+			long start = System.nanoTime();
+			this.sweeps = 0;
+			this.backups = 0;
+			this.policyChanges = 0;
+			
 			evaluatePolicy(this.delta);
 			policyChange = improvePolicy();
+			
+			iteration++;
+			for(PolicyIterationListener l: listeners)
+				l.iterationDone(iteration, sweeps, backups, policyChanges, System.nanoTime()-start);
+		}
+		
+		if (dense) {
+			this.policyValues.clear();
+			this.curPolicy.clear();
+			for(int id=0;id<index.size();id++) {
+				Game g=index.getGame(id);
+				this.policyValues.put(g, values[id]);
+				if (policyActions[id]>=0)
+					this.curPolicy.put(g, model.getMove(id, policyActions[id]));
+			}
 		}
 		
-		super.policy = new Policy(this.curPolicy);
+		super.policy = new DensePolicy(StateIndex.getInstance(symmetric), this.curPolicy);
 	}
 	
 	public static void main(String[] args) throws IllegalMoveException
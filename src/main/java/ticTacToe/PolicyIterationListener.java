@@ -0,0 +1,22 @@
+package ticTacToe;
+
+/**
+ * Receives progress reports from a {@link PolicyIterationAgent}, once per outer iteration (a policy evaluation step
+ * followed by a policy improvement step). Use it to see where training time goes, e.g. to choose the number of 
+ * evaluation sweeps in modified policy iteration.
+ * @author ae187
+ *
+ */
+public interface PolicyIterationListener {
+	
+	/**
+	 * Called after every policy improvement step.
+	 * @param iteration the number of the outer iteration, starting at 1
+	 * @param evaluationSweeps the number of policy evaluation sweeps in this iteration
+	 * @param backups the number of state backups in this iteration, evaluation and improvement together
+	 * @param policyChanges the number of states whose move was changed by the improvement step
+	 * @param nanos the wall time that the iteration took, in nanoseconds
+	 */
+	void iterationDone(int iteration, int evaluationSweeps, long backups, int policyChanges, long nanos);
+
+}
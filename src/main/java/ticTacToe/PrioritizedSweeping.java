@@ -0,0 +1,120 @@
+package ticTacToe;
+
+/**
+ * Value iteration by prioritized sweeping, on a {@link CompiledMDP}. Instead of sweeping over all states, it keeps a 
+ * priority queue of states ordered by their Bellman error (how much their value would change if backed up), and always
+ * backs up the state with the largest error first, updating its value in place (Gauss-Seidel style). When a state's 
+ * value changes, the errors of its predecessors are recomputed and they are pushed back on the queue. It stops when no 
+ * state has an error above {@code theta}, which is the same fixed point that full sweeps converge to, usually reached 
+ * with far fewer backups.
+ * 
+ * Used by {@link ValueIterationAgent} in prioritized mode, see {@link ValueIterationAgent#setPrioritized}.
+ * @author ae187
+ *
+ */
+public class PrioritizedSweeping {
+	
+	final CompiledMDP model;
+	final double discount;
+	
+	/**
+	 * states whose Bellman error is at most theta are considered converged
+	 */
+	final double theta;
+	
+	/**
+	 * never do more than this many backups
+	 */
+	long maxBackups=Long.MAX_VALUE;
+	
+	double[] values;
+	int[] bestActions;
+	
+	/**
+	 * the number of value updates done by {@link #solve()}
+	 */
+	long backups=0;
+	
+	/**
+	 * the number of Bellman errors computed by {@link #solve()}, to decide priorities
+	 */
+	long errorEvaluations=0;
+	
+	public PrioritizedSweeping(CompiledMDP model, double discount, double theta)
+	{
+		this.model=model;
+		this.discount=discount;
+		this.theta=theta;
+		this.values=new double[model.numStates()];
+	}
+	
+	/**
+	 * Runs prioritized sweeping from the current {@link #values} (all 0 to begin with) until no state has a Bellman 
+	 * error above {@link #theta}, then extracts the greedy actions into {@link #bestActions}.
+	 */
+	public void solve()
+	{
+		CompiledMDP.Predecessors predecessors=model.predecessors();
+		int n=model.numStates();
+		IndexedMaxHeap queue=new IndexedMaxHeap(n);
+		
+		for(int id=0;id<n;id++) {
+			double error=Math.abs(model.backup(id, values, discount)-values[id]);
+			errorEvaluations++;
+			if (error>theta)
+				queue.push(id, error);
+		}
+		
+		while (!queue.isEmpty() && backups<maxBackups) {
+			
+			int s=queue.pop();
+			values[s]=model.backup(s, values, discount);
+			backups++;
+			
+			for(int i=predecessors.start[s];i<predecessors.start[s+1];i++) {
+				int p=predecessors.ids[i];
+				double error=Math.abs(model.backup(p, values, discount)-values[p]);
+				errorEvaluations++;
+				if (error>theta)
+					queue.push(p, error);
+			}
+		}
+		
+		bestActions=new int[n];
+		for(int id=0;id<n;id++)
+			bestActions[id]=model.bestAction(id, values, discount);
+		
+	}
+	
+	/**
+	 * @return the state values, indexed by state id
+	 */
+	public double[] getValues()
+	{
+		return values;
+	}
+	
+	/**
+	 * @return the greedy action of every state after {@link #solve()}, indexed by state id (-1 for terminal states)
+	 */
+	public int[] getBestActions()
+	{
+		return bestActions;
+	}
+	
+	public long getBackups()
+	{
+		return backups;
+	}
+	
+	public long getErrorEvaluations()
+	{
+		return errorEvaluations;
+	}
+	
+	public void setMaxBackups(long maxBackups)
+	{
+		this.maxBackups=maxBackups;
+	}
+
+}
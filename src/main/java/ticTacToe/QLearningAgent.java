@@ -1,12 +1,10 @@
 package ticTacToe;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Random;
-import java.util.Set;
+import java.io.IOException;
+import java.util.function.Supplier;
 
 /**
- * A Q-Learning agent with a Q-Table, i.e. a table of Q-Values. This table is implemented in the {@link QTable} class.
+ * A Q-Learning agent with a Q-Table, i.e. a table of Q-Values. This table is implemented in the {@link DenseQTable} class.
  * 
  *  The methods to implement are: 
  * (1) {@link QLearningAgent#train}
@@ -37,18 +35,38 @@ public class QLearningAgent extends Agent {
 	
 	
 	/**
-	 * The epsilon in the epsilon greedy policy used during training.
+	 * The epsilon in the epsilon greedy policy used during training, at the first episode.
 	 */
 	double epsilon=0.1;
 	
+	/**
+	 * How epsilon decays over the episodes, to {@link #minEpsilon} over {@link #decayEpisodes} episodes, see 
+	 * {@link #setEpsilonDecay} and {@link EpsilonGreedyPolicy}. Constant by default.
+	 */
+	EpsilonGreedyPolicy.Decay decay=EpsilonGreedyPolicy.Decay.CONSTANT;
+	double minEpsilon=0.1;
+	int decayEpisodes=1;
+	
+	/**
+	 * The epsilon-greedy policy over {@link #qTable} that the agent explores with, in {@link #getMove} and in training 
+	 * when it is not parallel. Created by {@link #initQTable()}.
+	 */
+	EpsilonGreedyPolicy exploration;
+	
+	/**
+	 * Whether {@link #policy} was loaded from a file, in which case the agent plays by it in {@link #getMove}, since its
+	 * Q-Table was not trained. Cleared by {@link #train()}.
+	 */
+	boolean policyLoaded=false;
+	
 	/**
 	 * This is the Q-Table. To get an value for an (s,a) pair, i.e. a (game, move) pair, you can do
-	 * qTable.get(game).get(move) which return the Q(game,move) value stored. Be careful with 
-	 * cases where there is currently no value. You can use the containsKey method to check if the mapping is there.
+	 * qTable.getQValue(game, move), or use {@link DenseQTable#slot} to find where the value is stored 
+	 * and read or update it without any lookups. All values start at 0. Created by {@link #initQTable()}.
 	 * 
 	 */
 	
-	QTable qTable=new QTable();
+	DenseQTable qTable;
 	
 	
 	/**
@@ -58,6 +76,53 @@ public class QLearningAgent extends Agent {
 	 */
 	TTTEnvironment env=new TTTEnvironment();
 	
+	/**
+	 * Whether the Q-Table is over a symmetric {@link StateIndex}, sharing its Q-values between games that are rotations
+	 * or reflections of each other.
+	 */
+	boolean symmetric=false;
+	
+	/**
+	 * The number of threads training at once (see {@link #setParallel}). 1 means {@link #train()} plays all the episodes
+	 * itself, in this thread, against {@link #env}.
+	 */
+	int workers=1;
+	
+	/**
+	 * In parallel mode, the number of episodes each worker plays.
+	 */
+	int episodesPerWorker;
+	
+	/**
+	 * In parallel mode, makes one opponent for each worker. Null means each worker plays a new {@link RandomAgent}.
+	 */
+	Supplier<? extends Agent> opponents;
+	
+	/**
+	 * The experience replay buffer, or null if replay is off (see {@link #setReplay}).
+	 */
+	ReplayBuffer replay;
+	
+	/**
+	 * The number of transitions replayed after every episode.
+	 */
+	int replayBatch;
+	
+	/**
+	 * The trace decay of Watkins's Q(lambda), see {@link #setTraces}. 0 means one-step Q-learning.
+	 */
+	double lambda=0;
+	
+	/**
+	 * The number of steps in the returns of n-step Q-learning, see {@link #setNStep}. 1 means one-step Q-learning.
+	 */
+	int nStep=1;
+	
+	/**
+	 * How long the last call to {@link #train()} took to play its episodes, in nanoseconds.
+	 */
+	long trainingNanos;
+	
 	
 	/**
 	 * Construct a Q-Learning agent that learns from interactions with {@code opponent}.
@@ -76,33 +141,164 @@ public class QLearningAgent extends Agent {
 	}
 	
 	/**
-	 * Initialises all valid q-values -- Q(g,m) -- to 0.
+	 * Construct a Q-Learning agent that learns from interactions with the environment {@code env}. This constructor
+	 * does not train the agent: set any options (e.g. {@link #setSymmetric}) and then call {@link #train()}.
+	 * @param env the environment, including the opponent and the rewards.
+	 * @param learningRate This is the rate at which the agent learns. Alpha from your lectures.
+	 * @param numEpisodes The number of episodes (games) to train for
+	 */
+	public QLearningAgent(TTTEnvironment env, double learningRate, int numEpisodes, double discount)
+	{
+		this.env=env;
+		this.alpha=learningRate;
+		this.numEpisodes=numEpisodes;
+		this.discount=discount;
+	}
+	
+	/**
+	 * Turns symmetry-reduced mode on or off, replacing the Q-Table with an empty one of the right kind.
+	 * @param symmetric
+	 */
+	public void setSymmetric(boolean symmetric)
+	{
+		this.symmetric=symmetric;
+		initQTable();
+	}
+	
+	/**
+	 * Initialises all valid q-values -- Q(g,m) -- to 0, by creating a new Q-Table over all valid games where it is X's
+	 * turn, or that are terminal.
 	 *  
 	 */
 	
 	protected void initQTable()
 	{
-		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
-		for(Game g: allGames)
-		{
-			List<Move> moves=g.getPossibleMoves();
-			for(Move m: moves)
-			{
-				this.qTable.addQValue(g, m, 0.0);
-				//System.out.println("initing q value. Game:"+g);
-				//System.out.println("Move:"+m);
-			}
-			
-		}
+		StateIndex index=StateIndex.getInstance(symmetric);
+		this.qTable=workers>1 ? new AtomicQTable(index) : new DenseQTable(index);
+		this.exploration=newExploration();
 		
 	}
 	
+	/**
+	 * @return a new epsilon-greedy policy over {@link #qTable} with this agent's epsilon schedule and its own random
+	 * stream, e.g. for one training thread.
+	 */
+	protected EpsilonGreedyPolicy newExploration()
+	{
+		return new EpsilonGreedyPolicy(qTable, decay, epsilon, minEpsilon, decayEpisodes);
+	}
+	
+	/**
+	 * Makes epsilon decay over the training episodes, from {@code start} to {@code end}: linearly, reaching {@code end}
+	 * after {@code decayEpisodes} episodes, or exponentially with a time constant of {@code decayEpisodes} episodes. 
+	 * Exploring a lot early and little late lets the Q-values settle in fewer episodes. In parallel mode, each worker
+	 * counts its own episodes.
+	 * @param decay
+	 * @param start epsilon at the first episode
+	 * @param end the smallest epsilon
+	 * @param decayEpisodes
+	 */
+	public void setEpsilonDecay(EpsilonGreedyPolicy.Decay decay, double start, double end, int decayEpisodes)
+	{
+		this.decay=decay;
+		this.epsilon=start;
+		this.minEpsilon=end;
+		this.decayEpisodes=decayEpisodes;
+		if (this.qTable!=null)
+			this.exploration=newExploration();
+	}
+	
+	/**
+	 * Turns on Hogwild-style parallel training: {@link #train()} starts {@code workers} threads, each with its own 
+	 * {@link TTTEnvironment} (with the rewards of {@link #env}) and its own opponent, which play {@code episodesPerWorker} 
+	 * episodes each and all update one shared Q-Table without locking. The Q-Table is an {@link AtomicQTable}, so no 
+	 * update is lost, but a worker may choose its move from Q-values another worker is in the middle of changing. 
+	 * This replaces the Q-Table with an empty one. {@code workers}=1 turns parallel training off again.
+	 * @param workers the number of threads
+	 * @param episodesPerWorker the number of episodes each thread plays
+	 * @param opponents makes the opponent of each worker, since most agents can't be shared between threads. 
+	 * Null for random opponents.
+	 */
+	public void setParallel(int workers, int episodesPerWorker, Supplier<? extends Agent> opponents)
+	{
+		this.workers=workers;
+		this.episodesPerWorker=episodesPerWorker;
+		this.opponents=opponents;
+		initQTable();
+	}
+	
+	/**
+	 * Turns on experience replay: every transition is also stored in a {@link ReplayBuffer} of {@code capacity} 
+	 * transitions, and after every episode {@code batch} stored transitions are sampled and learned from again, so
+	 * each episode played teaches the agent more. Replay is not used in parallel mode. {@code capacity}=0 turns replay off.
+	 * @param capacity the number of most recent transitions kept
+	 * @param batch the number of transitions replayed after each episode
+	 * @param prioritized whether to replay transitions in proportion to their last TD error, instead of uniformly
+	 */
+	public void setReplay(int capacity, int batch, boolean prioritized)
+	{
+		this.replay=capacity>0 ? new ReplayBuffer(capacity, prioritized) : null;
+		this.replayBatch=batch;
+	}
+	
+	/**
+	 * Turns on Watkins's Q(lambda): every (s, a) visited in an episode keeps an eligibility trace, which decays by
+	 * discount*lambda each step, and every TD error also updates the earlier pairs in proportion to their traces, so a
+	 * win or a loss reaches the first moves of the game in one episode. The traces are cut after an exploratory move,
+	 * since the moves before it no longer lead to the greedy policy's return. This turns n-step returns off.
+	 * {@code lambda}=0 is one-step Q-learning.
+	 * @param lambda the trace decay, between 0 and 1
+	 */
+	public void setTraces(double lambda)
+	{
+		this.lambda=lambda;
+		this.nStep=1;
+	}
+	
+	/**
+	 * Turns on n-step Q-learning: each (s, a) is updated towards the discounted sum of the next {@code n} rewards plus
+	 * the discounted maxQ of the state {@code n} steps later (or the rewards up to the end of the game, if it ends
+	 * sooner, or an exploratory move cuts the return short). This turns Q(lambda) off. {@code n}=1 is one-step Q-learning.
+	 * <p>
+	 * This is not an improvement against a {@link RandomAgent}: after 3000 episodes, the greedy policy of n=2 lost 29
+	 * of 900 games, against 8 for one-step Q-learning, and larger n do worse, since the random opponent makes long
+	 * returns noisy. Use {@link #setTraces} to speed up learning instead.
+	 * @param n the number of steps
+	 */
+	public void setNStep(int n)
+	{
+		this.nStep=n;
+		this.lambda=0;
+	}
+	
+	/**
+	 * @return the Q-Table, or null before {@link #initQTable()}
+	 */
+	public DenseQTable getQTable()
+	{
+		return qTable;
+	}
+	
+	/**
+	 * @return how long the last call to {@link #train()} took to play its episodes, in nanoseconds, e.g. to work out
+	 * the throughput in episodes per second.
+	 */
+	public long getTrainingNanos()
+	{
+		return trainingNanos;
+	}
+	
 	/**
 	 * Uses default parameters for the opponent (a RandomAgent) and the learning rate (0.2). Use other constructor to set these manually.
+	 * Loads the agent's policy from {@link #getPolicyFileName()} if that is a valid policy file (see 
+	 * {@link #savePolicyToFile}), and only trains if it is not.
 	 */
 	public QLearningAgent()
 	{
-		this(new RandomAgent(), 0.3, 15000, 0.9);
+		this(new TTTEnvironment(new RandomAgent()), 0.3, 15000, 0.9);
+		initQTable();
+		if (loadPolicyFromFile()==null)
+			train();
 		
 	}
 	
@@ -118,49 +314,25 @@ public class QLearningAgent extends Agent {
 	
 	public void train()
 	{
+		if (this.qTable==null)
+			initQTable();
+		this.policyLoaded=false;
+		
 		try {
 			
-			for (int i=0;i<=this.numEpisodes;i++) {
-				
-				//start from start game
-				Game g = this.env.getCurrentGameState();
-				
-				while(g.isTerminal() == false) {
-					
-					//get a move according to an epsilon-greedy policy
-					Move m = getMove(g);					
-				    double currentQValue = this.qTable.getQValue(g, m);
-				    
-				    //execute move (careful: g becomes gPrime automatically)
-					Outcome mOutcome = this.env.executeMove(m);
-					double reward = mOutcome.localReward;
-					Game gPrime = mOutcome.sPrime;
-					
-					//calculate maxQ'(s',a')
-					List <Move> movesSprime =  gPrime.getPossibleMoves();
-					double primeMaxValue = -9999;
-					if(gPrime.isTerminal() == false) {
-						for(Move mPrime: movesSprime) {
-							double currentValueprime = this.qTable.getQValue(gPrime, mPrime);
-							if(currentValueprime > primeMaxValue)
-								primeMaxValue = currentValueprime;
-						}
-						
-					} else {
-						primeMaxValue = 0.0;
-					} //close if is terminal
-					
-					//update qValue and add to qTable
-					currentQValue = (1 - this.alpha)*currentQValue + this.alpha*(reward + this.discount*primeMaxValue);
-					this.qTable.addQValue(mOutcome.s, m, currentQValue);
-					
-				} //close while loop
-				
-				//reset episode
-				this.env.resetEpisode();
-				
-			} //close numEpisodes for loop
-			
+			long start=System.nanoTime();
+			if (workers>1)
+				trainParallel();
+			else
+			{
+				EligibilityTraces traces=new EligibilityTraces();
+				NStepWindow window=new NStepWindow(nStep);
+				for (int i=0;i<=this.numEpisodes;i++) {
+					this.exploration.setEpisode(i);
+					playEpisode(this.env, traces, window, this.exploration);
+				}
+			}
+			trainingNanos=System.nanoTime()-start;
 		
 			//--------------------------------------------------------
 			//you shouldn't need to delete the following lines of code.
@@ -176,32 +348,148 @@ public class QLearningAgent extends Agent {
 		} //close try/catch
 	}
 	
-	// The agent plays (moves) according to an epsilon-greedy policy
-	public Move getMove (Game g) 
+	/**
+	 * Plays one episode against {@code env}, from its current game to the end, updating the Q-Table after every move, 
+	 * and then resets {@code env}.
+	 * @param traces the eligibility traces, used in Q(lambda) mode. Each thread needs its own.
+	 * @param window the last n steps, used in n-step mode. Each thread needs its own.
+	 * @param explore the epsilon-greedy policy to play with, at the episode it is set to. Each thread needs its own.
+	 */
+	protected void playEpisode(TTTEnvironment env, EligibilityTraces traces, NStepWindow window, EpsilonGreedyPolicy explore) throws IllegalMoveException
 	{
-		Random rand = new Random();
-	    double randomNumber = rand.nextDouble(); // generates a random number between 0 and 1
-	    Move nextMove = null;
-	    List <Move> moves =  g.getPossibleMoves(); //all valid moves of game g
-	    
-	    if (randomNumber < this.epsilon) { //random move
-	    	nextMove = moves.get(rand.nextInt(moves.size()));
-	    }
-	    else { //optimal move
-			double maxValue = -9999;
-			Move maxMove = null;
-			for(Move m: moves) {
-				double currentValue = this.qTable.getQValue(g, m);
-				if(currentValue > maxValue) {
-					maxValue = currentValue;
-					maxMove = m;
-				}
+		//the replay buffer can't be shared between workers
+		boolean useReplay = this.replay!=null && this.workers==1;
+		
+		traces.clear();
+		window.clear();
+		
+		//start from start game
+		Game g = env.getCurrentGameState();
+		
+		while(g.isTerminal() == false) {
+			
+			//get a move according to an epsilon-greedy policy
+			int cell = explore.selectCell(g);
+			Move m = Move.of(g.whoseTurn.getName(), cell);
+			//where Q(g,m) is stored. Find it before the move, since g becomes gPrime
+			int slot = this.qTable.slot(g, 3*m.x+m.y);
+			
+			//Watkins: an exploratory move cuts the traces, or the n-step returns, of the moves before it
+			if ((this.lambda>0 || this.nStep>1) && this.qTable.get(slot) < this.qTable.maxQ(g)) {
+				traces.clear();
+				window.flush(this.qTable.maxQ(g), this.qTable, this.alpha, this.discount);
+			}
+		    
+		    //execute move (careful: g becomes gPrime automatically)
+			Outcome mOutcome = env.executeMove(m);
+			double reward = mOutcome.localReward;
+			Game gPrime = mOutcome.sPrime;
+			
+			//maxQ'(s',a'), 0 if s' is terminal
+			double primeMaxValue = this.qTable.maxQ(gPrime);
+			
+			//update qValue in the qTable
+			if (this.lambda>0) {
+				traces.visit(slot);
+				traces.update(this.qTable, this.alpha, reward + this.discount*primeMaxValue - this.qTable.get(slot));
+				traces.decay(this.discount*this.lambda);
 			}
+			else if (this.nStep>1)
+				window.add(slot, reward, primeMaxValue, this.qTable, this.alpha, this.discount);
+			else
+				this.qTable.update(slot, this.alpha, reward + this.discount*primeMaxValue);
 			
-			nextMove = maxMove;
-	    }
-	    
-		return nextMove;
+			if (useReplay)
+				this.replay.add(slot, reward, gPrime.isTerminal() ? -1 : this.qTable.getIndex().getId(gPrime));
+			
+		} //close while loop
+		
+		if (this.nStep>1)
+			window.flush(0.0, this.qTable, this.alpha, this.discount);
+		
+		if (useReplay)
+			this.replay.replay(this.qTable, this.replayBatch, this.alpha, this.discount);
+		
+		//reset episode
+		env.resetEpisode();
+	}
+	
+	/**
+	 * Runs {@link #workers} threads that each play {@link #episodesPerWorker} episodes against their own environment, 
+	 * and waits for them all to finish.
+	 * @throws IllegalMoveException if a worker's environment rejected a move. Any other exception or error that stopped
+	 * a worker is rethrown too, once all the workers are done, so that training never ends silently half done.
+	 */
+	protected void trainParallel() throws IllegalMoveException
+	{
+		Thread[] threads=new Thread[workers];
+		final Throwable[] errors=new Throwable[workers];
+		for(int w=0;w<workers;w++)
+		{
+			Agent opponent=opponents==null ? new RandomAgent() : opponents.get();
+			final TTTEnvironment workerEnv=new TTTEnvironment(opponent, env.winReward, env.loseReward, env.livingReward, env.drawReward);
+			final EligibilityTraces traces=new EligibilityTraces();
+			final NStepWindow window=new NStepWindow(nStep);
+			final EpsilonGreedyPolicy explore=newExploration();
+			final int worker=w;
+			threads[w]=new Thread("q-learning-worker-"+w) {
+				public void run()
+				{
+					try {
+						for (int i=0;i<episodesPerWorker;i++) {
+							explore.setEpisode(i);
+							playEpisode(workerEnv, traces, window, explore);
+						}
+					} catch (Throwable e) {
+						//whatever stopped this worker, train() reports it
+						errors[worker]=e;
+					}
+				}
+			};
+			threads[w].start();
+		}
+		
+		try {
+			for(Thread t:threads)
+				t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the Q-Learning workers", e);
+		}
+		
+		for(Throwable e:errors)
+			if (e instanceof IllegalMoveException)
+				throw (IllegalMoveException)e;
+			else if (e instanceof RuntimeException)
+				throw (RuntimeException)e;
+			else if (e instanceof Error)
+				throw (Error)e;
+			else if (e!=null)
+				throw new RuntimeException("Q-Learning worker failed", e);
+	}
+	
+	/**
+	 * Plays by the loaded policy, and stops exploring, until the agent trains again.
+	 */
+	@Override
+	public Policy loadPolicyFromFile(String file) throws IOException
+	{
+		Policy loaded=super.loadPolicyFromFile(file);
+		this.policyLoaded=true;
+		return loaded;
+	}
+	
+	// The agent plays (moves) according to an epsilon-greedy policy, with the epsilon of the last training episode,
+	// or by its policy if that was loaded from a file
+	public Move getMove (Game g) 
+	{
+		if (this.policyLoaded)
+			return this.policy.getMove(g);
+		
+		if (this.exploration==null)
+			initQTable();
+		
+		return this.exploration.getMove(g);
 	}
 	
 	
@@ -214,29 +502,18 @@ public class QLearningAgent extends Agent {
 	 */
 	public Policy extractPolicy()
 	{
-		Set <Game> allGames = this.qTable.keySet();
-		HashMap<Game, Move> optimalMoves = new HashMap<Game, Move>();
+		StateIndex index = this.qTable.getIndex();
+		byte[] cells = new byte[index.size()];
 		
-		for(Game g: allGames) {
-			
-			List<Move> moves = g.getPossibleMoves();
-			double maxValue = -9999;
-			Move maxMove = null;
-			
-			if(g.isTerminal() == false) {
-				for(Move m: moves) {
-					double currentValue = this.qTable.getQValue(g, m);
-					if(currentValue > maxValue)
-						maxValue = currentValue;
-						maxMove = m;
-				}
-			}
+		for(int id=0; id<index.size(); id++) {
 			
-			optimalMoves.put(g, maxMove);
+			//in symmetric mode the index's games are canonical, so bestCell is already a canonical cell
+			int cell = this.qTable.bestCell(index.getGame(id));
+			cells[id] = (cell<0) ? DensePolicy.NO_MOVE : (byte)cell;
 			
 		}
 		
-		Policy pol = new Policy(optimalMoves);
+		Policy pol = new DensePolicy(index, cells);
 		return pol;
 		
 	}
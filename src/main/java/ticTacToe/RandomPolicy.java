@@ -1,9 +1,7 @@
 package ticTacToe;
 
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * This is a Policy which picks an move randomly with equal probability from the available moves. 
@@ -12,41 +10,26 @@ import java.util.Random;
  */
 public class RandomPolicy extends Policy{
 
-	Random r = new Random();
+	SplittableRandom r = RandomStreams.split();
+	
+	/**
+	 * Replaces the stream of random numbers this policy draws from, see {@link RandomStreams}.
+	 */
+	public void setRandom(SplittableRandom r)
+	{
+		this.r=r;
+	}
 	
 	@Override
 	public Move getMove(Game g) {
 		
+		int empty=g.emptyCells();
+		int cell=Game.nthCell(empty, r.nextInt(Integer.bitCount(empty)));
 		
-		List<IndexPair> pairs=new ArrayList<IndexPair>();
-		
-		for(int i=0;i<3;i++)
-			for(int j=0;j<3;j++)
-			{
-				if (g.getBoard()[i][j]==' ')
-					pairs.add(new IndexPair(i,j));
-					
-			}
-		
-		IndexPair random=pairs.get(r.nextInt(pairs.size()));
-		
-		return new Move(g.whoseTurn, random.x, random.y);
+		return Move.of(g.whoseTurn.getName(), cell);
 	}
 	
 	
 	
 
 }
-
-
-class IndexPair{
-	
-	public int x;
-	public int y;
-	
-	IndexPair(int x, int y)
-	{
-		this.x=x;
-		this.y=y;
-	}
-}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package ticTacToe;
+
+
+import java.util.SplittableRandom;
+
+/**
+ * The one source of randomness for every policy, environment and trainer. There is a single root
+ * {@link SplittableRandom}; everything that needs random numbers takes its own stream from it with {@link #split()}
+ * when it is created, and from then on draws from that stream only, without locking or allocating.
+ *
+ * After {@link #setSeed}, the streams handed out depend only on the seed and on the order in which they are split
+ * off, so a run that creates its agents, policies and workers in the same order makes the same random choices. Parallel
+ * trainers split one stream per thread before starting the threads, so each thread's choices are reproducible too
+ * (although the order in which threads update a shared Q-Table is still up to the scheduler).
+ * 
+ * Without a seed, the root is seeded like {@code new SplittableRandom()}, i.e. differently in every run.
+ * @author ae187
+ *
+ */
+public class RandomStreams {
+	
+	static SplittableRandom root=new SplittableRandom();
+	
+	private RandomStreams()
+	{
+	}
+	
+	/**
+	 * Restarts all future streams from {@code seed}. Streams already split off are not affected, so call this before 
+	 * creating the agents of a run.
+	 */
+	public static synchronized void setSeed(long seed)
+	{
+		root=new SplittableRandom(seed);
+	}
+	
+	/**
+	 * @return a new stream, independent of the root and of every other stream split off. A stream must only be used by
+	 * one thread at a time.
+	 */
+	public static synchronized SplittableRandom split()
+	{
+		return root.split();
+	}
+
+}
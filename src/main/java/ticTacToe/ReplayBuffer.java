@@ -0,0 +1,198 @@
+package ticTacToe;
+
+
+import java.util.SplittableRandom;
+
+/**
+ * A fixed-capacity experience replay buffer for Q-learning. Transitions (s, a, r, s') are packed into primitive ring
+ * buffers, like in {@link TransitionQueue}: (s, a) as its {@link DenseQTable#slot}, s' as its {@link StateIndex} id or -1
+ * if it is terminal. Once the buffer is full, each new transition replaces the oldest one.
+ *
+ * Transitions are sampled either uniformly, or, if the buffer is prioritised, in proportion to their priority:
+ * (|TD error|+{@link #MIN_PRIORITY})^{@link #PRIORITY_EXPONENT}, as in prioritised experience replay. A new transition
+ * gets the largest priority seen so far, so it is replayed at least once soon. The priorities are kept in a sum tree,
+ * so sampling and updating a priority are O(log capacity). Since prioritised sampling replays some transitions more
+ * often than they happened, their updates are scaled down by an importance-sampling weight, (size*P(i))^-{@link #IS_EXPONENT},
+ * capped at 1.
+ * @author ae187
+ *
+ */
+public class ReplayBuffer {
+
+	/**
+	 * Added to every TD error, so that every transition keeps some chance of being replayed.
+	 */
+	static final double MIN_PRIORITY=1e-3;
+
+	/**
+	 * How much the priorities count: 0 is uniform sampling, 1 is fully in proportion to the TD errors.
+	 */
+	static final double PRIORITY_EXPONENT=0.6;
+
+	/**
+	 * How much the importance-sampling weights correct for prioritised sampling: 0 is not at all, 1 is fully.
+	 */
+	static final double IS_EXPONENT=0.4;
+
+	final int[] slots;
+	final double[] rewards;
+	final int[] nextIds;
+
+	/**
+	 * The number of transitions stored, and where the next one goes.
+	 */
+	int size=0;
+	int next=0;
+
+	/**
+	 * In prioritised mode, a sum tree over the priorities: leaf i, at tree[capacity+i], is the priority of transition
+	 * i, and every other node is the sum of its two children, so tree[1] is the total. Null in uniform mode.
+	 */
+	final double[] tree;
+	double maxPriority=1.0;
+
+	SplittableRandom random;
+
+	public ReplayBuffer(int capacity, boolean prioritized)
+	{
+		this.slots=new int[capacity];
+		this.rewards=new double[capacity];
+		this.nextIds=new int[capacity];
+		this.tree=prioritized ? new double[2*capacity] : null;
+		this.random=RandomStreams.split();
+	}
+
+	public int capacity()
+	{
+		return slots.length;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isPrioritized()
+	{
+		return tree!=null;
+	}
+
+	/**
+	 * Stores a transition, replacing the oldest one if the buffer is full.
+	 * @param slot the slot of (s, a) in the Q-Table
+	 * @param reward
+	 * @param nextId the state id of s', or -1 if it is terminal
+	 */
+	public void add(int slot, double reward, int nextId)
+	{
+		int i=next;
+		slots[i]=slot;
+		rewards[i]=reward;
+		nextIds[i]=nextId;
+		if (tree!=null)
+			setPriority(i, maxPriority);
+
+		next=(next+1)%slots.length;
+		if (size<slots.length)
+			size++;
+	}
+
+	/**
+	 * @return the position of a random stored transition, uniformly or by priority. The buffer must not be empty.
+	 */
+	public int sample()
+	{
+		if (tree==null)
+			return random.nextInt(size);
+
+		//walk down from the root to the leaf whose range of the total contains u
+		double u=random.nextDouble()*tree[1];
+		int node=1;
+		while (node<slots.length)
+		{
+			node*=2;
+			if (u>=tree[node] && tree[node+1]>0)
+			{
+				u-=tree[node];
+				node++;
+			}
+		}
+
+		return node-slots.length;
+	}
+
+	/**
+	 * Sets the priority of transition i from its latest TD error. Does nothing in uniform mode.
+	 */
+	public void updatePriority(int i, double tdError)
+	{
+		if (tree==null)
+			return;
+
+		double p=Math.pow(Math.abs(tdError)+MIN_PRIORITY, PRIORITY_EXPONENT);
+		if (p>maxPriority)
+			maxPriority=p;
+		setPriority(i, p);
+	}
+
+	/**
+	 * @return the importance-sampling weight of transition i, between 0 and 1: 1 in uniform mode, and smaller the more
+	 * often than uniformly transition i is sampled in prioritised mode.
+	 */
+	public double weight(int i)
+	{
+		if (tree==null)
+			return 1.0;
+
+		double w=Math.pow(size*tree[slots.length+i]/tree[1], -IS_EXPONENT);
+		return Math.min(1.0, w);
+	}
+
+	void setPriority(int i, double p)
+	{
+		int node=slots.length+i;
+		tree[node]=p;
+		for(node/=2;node>=1;node/=2)
+			tree[node]=tree[2*node]+tree[2*node+1];
+	}
+
+	/**
+	 * Samples {@code n} transitions and applies the Q-learning update to each, with the learning rate scaled by their
+	 * {@link #weight}, and updates their priorities.
+	 * @return the number of updates made, 0 if the buffer is empty
+	 */
+	public int replay(DenseQTable qTable, int n, double alpha, double discount)
+	{
+		if (size==0)
+			return 0;
+
+		for(int k=0;k<n;k++)
+		{
+			int i=sample();
+			int slot=slots[i];
+			double next=nextIds[i]<0 ? 0.0 : qTable.maxQ(nextIds[i]);
+			double target=rewards[i]+discount*next;
+			double w=weight(i);
+			updatePriority(i, target-qTable.get(slot));
+			qTable.update(slot, alpha*w, target);
+		}
+
+		return n;
+	}
+
+	public int getSlot(int i)
+	{
+		return slots[i];
+	}
+
+	public double getReward(int i)
+	{
+		return rewards[i];
+	}
+
+	public int getNextId(int i)
+	{
+		return nextIds[i];
+	}
+
+}
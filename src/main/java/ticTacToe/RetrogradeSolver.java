@@ -0,0 +1,170 @@
+package ticTacToe;
+
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An exact solver for the Tic-Tac-Toe MDP that needs no repeated sweeps. Every move adds a piece to the board, so the 
+ * state graph is acyclic: a state's successors always have fewer empty cells than the state itself. Backing up the 
+ * states layer by layer, from the fewest empty cells to the most, means every successor value is already final when 
+ * it is used, so one backup per state gives the optimal values. These are the values (and greedy moves) that 
+ * {@link ValueIterationAgent} and {@link PolicyIterationAgent} converge to.
+ * 
+ * States within a layer do not depend on each other, so each layer can be split across threads.
+ * 
+ * Used by {@link ValueIterationAgent} in retrograde mode, see {@link ValueIterationAgent#setRetrograde}.
+ * @author ae187
+ *
+ */
+public class RetrogradeSolver {
+	
+	/**
+	 * A layer is split into tasks of at most this many states.
+	 */
+	static final int LAYER_CHUNK=256;
+	
+	final CompiledMDP model;
+	final double discount;
+	
+	/**
+	 * The number of threads each layer is split across
+	 */
+	int threads=1;
+	
+	/**
+	 * State ids ordered by layer, fewest empty cells first
+	 */
+	final int[] order;
+	
+	/**
+	 * The states of layer e (those with e empty cells) are order[layerStart[e]] to order[layerStart[e+1]-1]
+	 */
+	final int[] layerStart=new int[11];
+	
+	double[] values;
+	int[] bestActions;
+	
+	public RetrogradeSolver(CompiledMDP model, double discount)
+	{
+		this.model=model;
+		this.discount=discount;
+		
+		//counting sort of the states by number of empty cells
+		StateIndex index=model.getIndex();
+		int n=index.size();
+		int[] empties=new int[n];
+		for(int id=0;id<n;id++) {
+			empties[id]=Integer.bitCount(index.getGame(id).emptyCells());
+			layerStart[empties[id]+1]++;
+		}
+		for(int e=0;e<10;e++)
+			layerStart[e+1]+=layerStart[e];
+		
+		order=new int[n];
+		int[] fill=layerStart.clone();
+		for(int id=0;id<n;id++)
+			order[fill[empties[id]]++]=id;
+	}
+	
+	/**
+	 * @param threads the number of threads each layer is split across. The values do not depend on it.
+	 */
+	public void setThreads(int threads)
+	{
+		if (threads<1)
+			throw new IllegalArgumentException("Need at least one thread");
+		
+		this.threads=threads;
+	}
+	
+	/**
+	 * Computes the optimal value and greedy action of every state, one layer at a time.
+	 */
+	public void solve()
+	{
+		int n=model.numStates();
+		values=new double[n];
+		bestActions=new int[n];
+		
+		ForkJoinPool pool=(threads>1) ? new ForkJoinPool(threads) : null;
+		try {
+			for(int e=0;e<10;e++) {
+				LayerTask layer=new LayerTask(layerStart[e], layerStart[e+1]);
+				if (pool!=null)
+					pool.invoke(layer);
+				else
+					layer.backup();
+			}
+		} finally {
+			if (pool!=null)
+				pool.shutdown();
+		}
+	}
+	
+	/**
+	 * @return the state values, indexed by state id
+	 */
+	public double[] getValues()
+	{
+		return values;
+	}
+	
+	/**
+	 * @return the greedy action of every state, indexed by state id ({@link CompiledMDP#NO_ACTION} for terminal states)
+	 */
+	public int[] getBestActions()
+	{
+		return bestActions;
+	}
+	
+	/**
+	 * Backs up the states order[from] to order[to-1], which all belong to one layer. Invoked in a pool, it splits the 
+	 * range in halves until it is at most {@link RetrogradeSolver#LAYER_CHUNK} states long; without one, 
+	 * {@link #backup()} does the whole layer in the calling thread.
+	 */
+	class LayerTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final int from, to;
+		
+		LayerTask(int from, int to)
+		{
+			this.from=from;
+			this.to=to;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to-from<=LAYER_CHUNK) {
+				backup();
+				return;
+			}
+			
+			int mid=(from+to)>>>1;
+			invokeAll(new LayerTask(from, mid), new LayerTask(mid, to));
+		}
+		
+		/**
+		 * Backs up the states order[from] to order[to-1] in this thread, without forking.
+		 */
+		void backup()
+		{
+			for(int i=from;i<to;i++) {
+				int id=order[i];
+				if (model.isTerminal(id)) {
+					bestActions[id]=CompiledMDP.NO_ACTION;
+					values[id]=0.0;
+					continue;
+				}
+				
+				int a=model.bestAction(id, values, discount);
+				bestActions[id]=a;
+				values[id]=model.qValue(a, values, discount);
+			}
+		}
+	}
+
+}
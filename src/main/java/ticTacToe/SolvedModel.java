@@ -0,0 +1,93 @@
+package ticTacToe;
+
+
+import java.util.Map;
+
+/**
+ * The result of solving the Tic-Tac-Toe MDP: the value of every state and the policy, both indexed by the ids of a
+ * {@link StateIndex}. Solved models are shared between agents by the {@link SolvedModelCache}, so they must not be
+ * modified; {@link #copyValues()} gives an agent its own copy of the values.
+ * @author ae187
+ *
+ */
+public class SolvedModel {
+	
+	final StateIndex index;
+	
+	/**
+	 * id -> value
+	 */
+	final double[] values;
+	
+	final DensePolicy policy;
+	
+	public SolvedModel(StateIndex index, double[] values, DensePolicy policy)
+	{
+		this.index=index;
+		this.values=values;
+		this.policy=policy;
+	}
+	
+	/**
+	 * Packs the values and the policy an agent has computed in its maps.
+	 * @param values keyed by the games of {@code index} (canonical ones, if it is symmetric). Missing games are worth 0.
+	 * @param policy a policy over {@code index}
+	 */
+	public static SolvedModel fromMaps(StateIndex index, Map<Game, Double> values, DensePolicy policy)
+	{
+		double[] dense=new double[index.size()];
+		for(int id=0;id<dense.length;id++) {
+			Double v=values.get(index.getGame(id));
+			dense[id]=(v==null) ? 0.0 : v;
+		}
+		
+		return new SolvedModel(index, dense, policy);
+	}
+	
+	/**
+	 * Fills in the maps an agent keeps its solution in: the value of every state, and the policy's move in every state
+	 * that has one, keyed by the games of {@link #index}.
+	 */
+	public void fillMaps(Map<Game, Double> valueMap, Map<Game, Move> moveMap)
+	{
+		for(int id=0;id<values.length;id++) {
+			Game g=index.getGame(id);
+			valueMap.put(g, values[id]);
+			int cell=policy.getCell(id);
+			if (cell>=0)
+				moveMap.put(g, Move.of(g.whoseTurn.getName(), cell));
+		}
+	}
+	
+	public StateIndex getIndex()
+	{
+		return index;
+	}
+	
+	public DensePolicy getPolicy()
+	{
+		return policy;
+	}
+	
+	/**
+	 * @return the value of the state with this id
+	 */
+	public double getValue(int id)
+	{
+		return values[id];
+	}
+	
+	public double[] copyValues()
+	{
+		return values.clone();
+	}
+	
+	/**
+	 * @return roughly how many bytes of heap this model takes, for the cache's memory budget
+	 */
+	public long bytes()
+	{
+		return 64+9L*values.length;
+	}
+
+}
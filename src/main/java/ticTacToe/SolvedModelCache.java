@@ -0,0 +1,354 @@
+package ticTacToe;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * A process-wide cache of solved MDPs, so that constructing another {@link ValueIterationAgent} or 
+ * {@link PolicyIterationAgent} with the same parameters reuses the first one's solution instead of enumerating the 
+ * games and solving again.
+ * 
+ * Models are keyed by {@link Key}: the algorithm (with whatever settings change its result), the discount and the 
+ * rewards. Each model is computed once: callers that ask for a key while it is being solved wait for that solve and 
+ * share its result. Once the models take more than the memory budget, the least recently used ones are evicted. 
+ * Optionally, models are also written to a directory and read back from it on a miss, e.g. by the next JVM.
+ * @author ae187
+ *
+ */
+public class SolvedModelCache {
+	
+	static final int MAGIC=0x5454544D;
+	static final int VERSION=2;
+	
+	/**
+	 * The default memory budget, in bytes: room for a few hundred models over the full index.
+	 */
+	static final long DEFAULT_BUDGET=16L*1024*1024;
+	
+	private static final SolvedModelCache instance=new SolvedModelCache(DEFAULT_BUDGET);
+	
+	/**
+	 * What a solved model depends on.
+	 */
+	public static final class Key {
+		
+		final String algorithm;
+		final boolean symmetric;
+		final double discount;
+		final double winReward;
+		final double loseReward;
+		final double livingReward;
+		final double drawReward;
+		
+		/**
+		 * @param algorithm names the solver and any settings that change its result, e.g. the number of sweeps
+		 * @param symmetric whether the model is over the symmetric {@link StateIndex}
+		 */
+		public Key(String algorithm, boolean symmetric, double discount, TTTMDP mdp)
+		{
+			this.algorithm=algorithm;
+			this.symmetric=symmetric;
+			this.discount=discount;
+			this.winReward=mdp.winReward;
+			this.loseReward=mdp.loseReward;
+			this.livingReward=mdp.livingReward;
+			this.drawReward=mdp.drawReward;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result=algorithm.hashCode();
+			result=31*result+(symmetric ? 1 : 0);
+			result=31*result+Double.hashCode(discount);
+			result=31*result+Double.hashCode(winReward);
+			result=31*result+Double.hashCode(loseReward);
+			result=31*result+Double.hashCode(livingReward);
+			result=31*result+Double.hashCode(drawReward);
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other=(Key)obj;
+			return algorithm.equals(other.algorithm) && symmetric==other.symmetric
+					&& Double.compare(discount, other.discount)==0
+					&& Double.compare(winReward, other.winReward)==0
+					&& Double.compare(loseReward, other.loseReward)==0
+					&& Double.compare(livingReward, other.livingReward)==0
+					&& Double.compare(drawReward, other.drawReward)==0;
+		}
+		
+		/**
+		 * @return the name of the file this model is persisted in
+		 */
+		String fileName()
+		{
+			return algorithm+(symmetric ? "-sym" : "")+"_"+discount+"_"+winReward+"_"+loseReward+"_"+livingReward
+					+"_"+drawReward+".model";
+		}
+		
+		public String toString()
+		{
+			return fileName();
+		}
+	}
+	
+	/**
+	 * key -> model, solved or being solved, in least recently used order
+	 */
+	private final LinkedHashMap<Key, CompletableFuture<SolvedModel>> models=
+			new LinkedHashMap<Key, CompletableFuture<SolvedModel>>(16, 0.75f, true);
+	
+	/**
+	 * the bytes taken by the solved models in {@link #models}
+	 */
+	private long used=0;
+	private long budget;
+	
+	/**
+	 * where models are persisted, or null if they are not
+	 */
+	private File directory;
+	
+	private long hits=0;
+	private long misses=0;
+	
+	public SolvedModelCache(long budget)
+	{
+		this.budget=budget;
+	}
+	
+	/**
+	 * @return the cache the agents use
+	 */
+	public static SolvedModelCache getInstance()
+	{
+		return instance;
+	}
+	
+	/**
+	 * Sets the memory budget in bytes, evicting models if they now take more. 0 keeps nothing once it is solved, 
+	 * although callers asking at the same time still share one solve.
+	 */
+	public synchronized void setBudget(long budget)
+	{
+		this.budget=budget;
+		evict(null);
+	}
+	
+	/**
+	 * Persists models in {@code directory} from now on, and looks for them there on a miss. Null turns persistence off.
+	 */
+	public synchronized void setDirectory(File directory)
+	{
+		this.directory=directory;
+	}
+	
+	/**
+	 * Drops every solved model from memory.
+	 */
+	public synchronized void clear()
+	{
+		for(Iterator<CompletableFuture<SolvedModel>> it=models.values().iterator();it.hasNext();)
+			if (it.next().isDone())
+				it.remove();
+		used=0;
+	}
+	
+	public synchronized int size()
+	{
+		return models.size();
+	}
+	
+	public synchronized long getUsedBytes()
+	{
+		return used;
+	}
+	
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	/**
+	 * @return the model for {@code key}: from memory, from the directory, or else from {@code solver}, which is run 
+	 * in this thread. If another thread is already solving the key, waits for it instead.
+	 * @throws RuntimeException or Error thrown by {@code solver}, in this caller; callers waiting for it get it wrapped
+	 * in a {@link java.util.concurrent.CompletionException}. The key is not cached then, so a later call solves again.
+	 */
+	public SolvedModel get(Key key, Supplier<SolvedModel> solver)
+	{
+		CompletableFuture<SolvedModel> future;
+		boolean owner=false;
+		File dir;
+		synchronized (this) {
+			future=models.get(key);
+			if (future==null) {
+				future=new CompletableFuture<SolvedModel>();
+				models.put(key, future);
+				owner=true;
+				misses++;
+			} else
+				hits++;
+			dir=directory;
+		}
+		
+		if (!owner)
+			return future.join();
+		
+		SolvedModel model;
+		try {
+			model=(dir==null) ? null : read(new File(dir, key.fileName()), key);
+			if (model==null) {
+				model=solver.get();
+				if (dir!=null)
+					write(new File(dir, key.fileName()), model);
+			}
+		} catch (Throwable e) {
+			//whatever went wrong, the waiters must be released and the key freed
+			synchronized (this) {
+				models.remove(key);
+			}
+			future.completeExceptionally(e);
+			if (e instanceof Error)
+				throw (Error)e;
+			throw (RuntimeException)e;
+		}
+		
+		synchronized (this) {
+			used+=model.bytes();
+			future.complete(model);
+			evict(key);
+		}
+		return model;
+	}
+	
+	/**
+	 * Evicts the least recently used solved models, other than {@code keep}, until the rest fit in the budget.
+	 */
+	private void evict(Key keep)
+	{
+		for(Iterator<Map.Entry<Key, CompletableFuture<SolvedModel>>> it=models.entrySet().iterator();
+				it.hasNext() && used>budget;) {
+			Map.Entry<Key, CompletableFuture<SolvedModel>> e=it.next();
+			if (e.getKey().equals(keep) || !e.getValue().isDone())
+				continue;
+			used-=e.getValue().join().bytes();
+			it.remove();
+		}
+		
+		if (used>budget && keep!=null && models.containsKey(keep)) {
+			used-=models.remove(keep).join().bytes();
+		}
+	}
+	
+	/**
+	 * Writes a model: a header (magic, version, whether it is symmetric, the number of states n, the CRC-32 of the 
+	 * body), then the body: n values and n policy cells. Failing to write only means the next JVM has to solve again,
+	 * so errors are reported and ignored.
+	 */
+	static void write(File file, SolvedModel model)
+	{
+		File tmp=new File(file.getPath()+".tmp");
+		int n=model.values.length;
+		ByteBuffer body=ByteBuffer.allocate(9*n);
+		for(int id=0;id<n;id++)
+			body.putDouble(model.values[id]);
+		for(int id=0;id<n;id++) {
+			int cell=model.policy.getCell(id);
+			body.put(cell<0 ? DensePolicy.NO_MOVE : (byte)cell);
+		}
+		
+		try (DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeBoolean(model.index.isSymmetric());
+			out.writeInt(n);
+			out.writeLong(checksum(body.array()));
+			out.write(body.array());
+		} catch (IOException e) {
+			System.out.println("Could not persist solved model to "+file+": "+e.getMessage());
+			tmp.delete();
+			return;
+		}
+		
+		//so that a reader never sees half a file
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file))
+				tmp.delete();
+		}
+	}
+	
+	/**
+	 * @return the model stored in {@code file}, or null if there is none, it doesn't fit {@code key}, or it is corrupt
+	 * or truncated
+	 */
+	static SolvedModel read(File file, Key key)
+	{
+		if (!file.isFile())
+			return null;
+		
+		try (DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt()!=MAGIC || in.readInt()!=VERSION || in.readBoolean()!=key.symmetric)
+				return null;
+			
+			StateIndex index=StateIndex.getInstance(key.symmetric);
+			int n=in.readInt();
+			if (n!=index.size())
+				return null;
+			
+			long crc=in.readLong();
+			byte[] bytes=new byte[9*n];
+			in.readFully(bytes);
+			if (in.read()!=-1 || checksum(bytes)!=crc) {
+				System.out.println("Ignoring corrupt solved model "+file);
+				return null;
+			}
+			
+			ByteBuffer body=ByteBuffer.wrap(bytes);
+			double[] values=new double[n];
+			for(int id=0;id<n;id++)
+				values[id]=body.getDouble();
+			byte[] cells=new byte[n];
+			body.get(cells);
+			
+			return new SolvedModel(index, values, new DensePolicy(index, cells));
+		} catch (IOException e) {
+			//including EOFException, for a truncated file
+			System.out.println("Could not read solved model from "+file+": "+e.getMessage());
+			return null;
+		}
+	}
+	
+	static long checksum(byte[] bytes)
+	{
+		CRC32 crc=new CRC32();
+		crc.update(bytes, 0, bytes.length);
+		return crc.getValue();
+	}
+
+}
@@ -0,0 +1,149 @@
+package ticTacToe;
+
+
+import java.util.List;
+
+/**
+ * A perfect index over the valid games returned by {@link Game#generateAllValidGames(char)}, i.e. the states of the 
+ * {@link TTTMDP}. Each game gets a contiguous integer id between 0 and {@link #size()}-1, so that values, policies etc. 
+ * can be stored in primitive arrays indexed by id instead of in maps keyed by {@link Game}.
+ * 
+ * Ids are assigned in increasing order of {@link Game#hashCode()}, and the index maps both ways between ids and hashes.
+ * 
+ * In symmetric mode only canonical games (see {@link Game#canonical()}) get an id, and looking up any game returns 
+ * the id of its canonical form.
+ * 
+ * @author ae187
+ *
+ */
+public class StateIndex {
+	
+	/**
+	 * the number of possible game hashes, see {@link Game#hashCode()}
+	 */
+	static final int NUM_HASHES=59049;
+	
+	private static StateIndex full;
+	private static StateIndex symmetricIndex;
+	
+	/**
+	 * id -> hash
+	 */
+	final int[] hashes;
+	
+	/**
+	 * hash -> id, or -1 if the hash is not a state in this index
+	 */
+	final int[] ids=new int[NUM_HASHES];
+	
+	/**
+	 * id -> game
+	 */
+	final Game[] games;
+	
+	final boolean symmetric;
+	
+	/**
+	 * Indexes all valid games where it is X's turn, or that are terminal.
+	 */
+	public StateIndex()
+	{
+		this(false);
+	}
+	
+	/**
+	 * Indexes all valid games where it is X's turn, or that are terminal. If {@code symmetric} is true, only canonical 
+	 * ones.
+	 * @param symmetric
+	 */
+	public StateIndex(boolean symmetric)
+	{
+		this.symmetric=symmetric;
+		List<Game> allGames=Game.generateAllValidGames('X', symmetric);
+		this.hashes=new int[allGames.size()];
+		this.games=new Game[allGames.size()];
+		
+		for(int h=0;h<NUM_HASHES;h++)
+			ids[h]=-1;
+		
+		for(int id=0;id<games.length;id++)
+		{
+			Game g=allGames.get(id);
+			games[id]=g;
+			hashes[id]=g.hashCode();
+			ids[hashes[id]]=id;
+		}
+		
+	}
+	
+	/**
+	 * The index is immutable, so one instance of each kind can be shared by everyone.
+	 * @param symmetric
+	 * @return the shared index, built on first use.
+	 */
+	public static synchronized StateIndex getInstance(boolean symmetric)
+	{
+		if (symmetric)
+		{
+			if (symmetricIndex==null)
+				symmetricIndex=new StateIndex(true);
+			
+			return symmetricIndex;
+		}
+		
+		if (full==null)
+			full=new StateIndex(false);
+		
+		return full;
+	}
+	
+	/**
+	 * @return the number of states in the index
+	 */
+	public int size()
+	{
+		return games.length;
+	}
+	
+	public boolean isSymmetric()
+	{
+		return symmetric;
+	}
+	
+	/**
+	 * @param g
+	 * @return the id of {@code g} (of its canonical form in symmetric mode), or -1 if it is not in the index.
+	 */
+	public int getId(Game g)
+	{
+		return ids[symmetric ? g.canonicalHashCode() : g.hashCode()];
+	}
+	
+	/**
+	 * @param hash a game hash, see {@link Game#hashCode()}
+	 * @return the id of the game with this hash, or -1 if it is not in the index. No canonicalisation is done here.
+	 */
+	public int getIdOfHash(int hash)
+	{
+		return ids[hash];
+	}
+	
+	/**
+	 * @param id
+	 * @return the hash of the game with this id
+	 */
+	public int getHash(int id)
+	{
+		return hashes[id];
+	}
+	
+	/**
+	 * @param id
+	 * @return the game with this id. This is shared, so don't execute moves on it.
+	 */
+	public Game getGame(int id)
+	{
+		return games[id];
+	}
+
+}
@@ -0,0 +1,83 @@
+package ticTacToe;
+
+/**
+ * A reusable cursor over the successors of a game, made in place with {@link Game#makeMove} and 
+ * {@link Game#unmakeMove} instead of by copying the game:
+ * 
+ * <pre>
+ * Successors s=new Successors();
+ * ...
+ * g.successors(s);
+ * while (s.next()) {
+ *     //g is now the successor where the player whose turn it was played in s.cell()
+ * }
+ * //g is back as it was
+ * </pre>
+ * 
+ * Each call to {@link #next()} undoes the previous move before making the next one, and the call that returns false
+ * leaves the game as it started. To leave the loop early, call {@link #restore()}. A cursor can be reused for any
+ * number of games, one at a time, so a search needs one per depth and allocates nothing while it runs.
+ * @author ae187
+ *
+ */
+public class Successors {
+	
+	Game game;
+	
+	/**
+	 * the empty cells not visited yet
+	 */
+	int remaining;
+	
+	/**
+	 * the cell of the move currently made, or -1 if none is
+	 */
+	int cell=-1;
+	
+	/**
+	 * Starts visiting the successors of {@code game}, which is not changed until {@link #next()} is called. A terminal
+	 * game has none.
+	 */
+	public void reset(Game game)
+	{
+		this.game=game;
+		this.remaining=game.isTerminal() ? 0 : game.emptyCells();
+		this.cell=-1;
+	}
+	
+	/**
+	 * Undoes the current successor's move, if any, and makes the next one.
+	 * @return false, with the game restored, once every successor has been visited
+	 */
+	public boolean next()
+	{
+		restore();
+		if (remaining==0)
+			return false;
+		
+		cell=Integer.numberOfTrailingZeros(remaining);
+		remaining&=remaining-1;
+		game.makeMove(cell);
+		return true;
+	}
+	
+	/**
+	 * Undoes the current successor's move, if any, leaving the game as it was before {@link #next()} was first called.
+	 */
+	public void restore()
+	{
+		if (cell>=0) {
+			game.unmakeMove(cell);
+			cell=-1;
+		}
+	}
+	
+	/**
+	 * @return the cell (3*x+y) of the move that made the current successor
+	 */
+	public int cell()
+	{
+		return cell;
+	}
+
+}
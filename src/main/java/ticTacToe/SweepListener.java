@@ -0,0 +1,20 @@
+package ticTacToe;
+
+/**
+ * Receives progress reports from iterative solvers such as {@link ValueIterationAgent}, once per sweep over the states.
+ * Use it to watch how quickly a solver converges, e.g. to choose a convergence threshold.
+ * @author ae187
+ *
+ */
+public interface SweepListener {
+	
+	/**
+	 * Called after every sweep.
+	 * @param sweep the number of the sweep, starting at 1
+	 * @param residual the largest change in the value of any state during the sweep (the Bellman residual)
+	 * @param policyChanges the number of states whose greedy move changed during the sweep
+	 * @param nanos the wall time that the sweep took, in nanoseconds
+	 */
+	void sweepDone(int sweep, double residual, int policyChanges, long nanos);
+
+}
@@ -86,7 +86,7 @@ public class TTTEnvironment {
 			System.out.println("Executing move in terminal state. Returning null.");
 			return null;
 		}
-		else if (m.who.getName()!='X')
+		else if (m.getPlayer()!='X')
 		{
 			System.out.println("Trying to executing O move - the RL agent must always play as X. Returning null Outcome object.");
 			return null;
@@ -135,9 +135,12 @@ public class TTTEnvironment {
 		return game.isTerminal();
 	}
 	
+	/**
+	 * Starts a new game against the same opponent.
+	 */
 	public void resetEpisode()
 	{
-		this.game = new Game(new Agent(), new RandomAgent());
+		this.game = new Game(new Agent(), game.o);
 	}
 
 }
@@ -2,6 +2,7 @@ package ticTacToe;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -26,6 +27,11 @@ public class TTTMDP {
 	double livingReward=-1.00;
 	double drawReward=0.0;
 	
+	/**
+	 * The last model compiled by {@link #compile(StateIndex)}
+	 */
+	private CompiledMDP compiled;
+	
 	public TTTMDP() {
 	
 		
@@ -50,10 +56,10 @@ public class TTTMDP {
 	 */
 	public List<TransitionProb> generateTransitions(Game g, Move m)
 	{
-		if (g.whoseTurn.getName()!=m.who.getName())
-			throw new IllegalArgumentException("It's not "+m.who.getName()+"'s turn in game. This shouldn't happen!");
+		if (g.whoseTurn.getName()!=m.getPlayer())
+			throw new IllegalArgumentException("It's not "+m.getPlayer()+"'s turn in game. This shouldn't happen!");
 		
-		if (m.who.getName()=='O')
+		if (m.getPlayer()=='O')
 		{
 			throw new IllegalStateException("Value Iteration Agent is playing O. This will lead to unexpected results. It shouldn't happen.");
 		}
@@ -137,6 +143,30 @@ public class TTTMDP {
 	
 	
 	
+	/**
+	 * Compiles this MDP over the states of {@code index} into a {@link CompiledMDP}, i.e. generates the transitions of
+	 * every state and move once and stores them in primitive arrays. The model is kept, so calling this again with the 
+	 * same index is free, unless the rewards have changed since, in which case it is compiled again. (The discount is not
+	 * part of the model: solvers pass it to every backup.)
+	 * @param index
+	 * @return the compiled model
+	 */
+	public synchronized CompiledMDP compile(StateIndex index)
+	{
+		if (compiled==null || compiled.index!=index || !Arrays.equals(compiled.compiledRewards, rewards()))
+			compiled=new CompiledMDP(this, index);
+		
+		return compiled;
+	}
+	
+	/**
+	 * @return the rewards: win, lose, living and draw
+	 */
+	double[] rewards()
+	{
+		return new double[] {winReward, loseReward, livingReward, drawReward};
+	}
+	
 	public boolean isTerminal(Game g)
 	{
 		return g.isTerminal();
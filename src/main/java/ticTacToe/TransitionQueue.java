@@ -0,0 +1,90 @@
+package ticTacToe;
+
+/**
+ * A bounded queue of Q-learning transitions (s, a, r, s'), stored as primitives in ring buffers so that passing a
+ * transition allocates nothing. (s, a) is given as its {@link DenseQTable#slot}, and s' as its {@link StateIndex} id,
+ * or -1 if it is terminal. Each transition also carries the version of the policy snapshot the move was chosen with,
+ * to measure staleness.
+ *
+ * One actor puts, one learner drains; {@link #put} blocks while the queue is full.
+ * @author ae187
+ *
+ */
+class TransitionQueue {
+
+	final int[] slots;
+	final double[] rewards;
+	final int[] nextIds;
+	final long[] versions;
+
+	/**
+	 * the position of the oldest transition, and the number of transitions queued
+	 */
+	int head=0;
+	int count=0;
+
+	/**
+	 * the total time {@link #put} has spent waiting for room, in nanoseconds
+	 */
+	long blockedNanos=0;
+
+	TransitionQueue(int capacity)
+	{
+		this.slots=new int[capacity];
+		this.rewards=new double[capacity];
+		this.nextIds=new int[capacity];
+		this.versions=new long[capacity];
+	}
+
+	synchronized void put(int slot, double reward, int nextId, long version) throws InterruptedException
+	{
+		if (count==slots.length)
+		{
+			long start=System.nanoTime();
+			while (count==slots.length)
+				wait();
+			blockedNanos+=System.nanoTime()-start;
+		}
+
+		int tail=(head+count)%slots.length;
+		slots[tail]=slot;
+		rewards[tail]=reward;
+		nextIds[tail]=nextId;
+		versions[tail]=version;
+		count++;
+	}
+
+	/**
+	 * Moves up to {@code max} of the oldest transitions into the given arrays, from position 0, without waiting.
+	 * @return the number of transitions moved
+	 */
+	synchronized int drainTo(int[] slots, double[] rewards, int[] nextIds, long[] versions, int max)
+	{
+		int n=Math.min(max, count);
+		for(int i=0;i<n;i++)
+		{
+			int k=(head+i)%this.slots.length;
+			slots[i]=this.slots[k];
+			rewards[i]=this.rewards[k];
+			nextIds[i]=this.nextIds[k];
+			versions[i]=this.versions[k];
+		}
+		head=(head+n)%this.slots.length;
+		count-=n;
+		if (n>0)
+			notifyAll();
+
+		return n;
+	}
+
+	synchronized int size()
+	{
+		return count;
+	}
+
+	synchronized long getBlockedNanos()
+	{
+		return blockedNanos;
+	}
+
+}
@@ -1,10 +1,15 @@
 package ticTacToe;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
 /**
  * A Value Iteration Agent, only very partially implemented. The methods to implement are: 
@@ -38,17 +43,103 @@ public class ValueIterationAgent extends Agent {
 	 */
 	int k=10;
 	
+	/**
+	 * In convergence mode, iteration stops once the Bellman residual of a sweep, i.e. the largest change in the value of
+	 * any state, is below epsilon, instead of after {@link #k} sweeps. Negative means convergence mode is off.
+	 */
+	double epsilon=-1;
 	
 	/**
-	 * This constructor trains the agent offline first and sets its policy
+	 * In convergence mode, also stop once the greedy policy has not changed for this many sweeps in a row. 0 means 
+	 * only the residual is used.
+	 */
+	int stableSweeps=0;
+	
+	/**
+	 * In convergence mode, never do more than this many sweeps.
+	 */
+	int maxSweeps=1000;
+	
+	/**
+	 * Told about every sweep, see {@link SweepListener}
+	 */
+	List<SweepListener> listeners=new ArrayList<SweepListener>();
+	
+	/**
+	 * the number of sweeps in a row in which the greedy policy did not change.
+	 */
+	private int stableRun;
+	
+	/**
+	 * Whether to run in symmetry-reduced mode, where only canonical games (see {@link Game#canonical()}) are stored in 
+	 * {@link #valueFunction} and {@link #optimalMoves}, and the resulting policy is a {@link DensePolicy} over the
+	 * symmetric {@link StateIndex}, which maps the moves of canonical games back to the game being played.
+	 */
+	boolean symmetric=false;
+	
+	/**
+	 * Whether to run in dense mode, where the values are kept in {@link #values}, a primitive array indexed by the
+	 * {@link StateIndex} ids of the games, while iterating. {@link #valueFunction} is filled in from it at the end.
+	 */
+	boolean dense=false;
+	
+	/**
+	 * The state index used in dense mode
+	 */
+	StateIndex index;
+	
+	/**
+	 * The values of states in dense mode, indexed by {@link #index} id.
+	 */
+	double[] values;
+	
+	/**
+	 * Whether dense mode runs synchronous (Jacobi) sweeps, where every backup in a sweep reads the values of the 
+	 * previous sweep and writes into a second array, instead of updating {@link #values} in place. Needed to run 
+	 * sweeps on several threads.
+	 */
+	boolean jacobi=false;
+	
+	/**
+	 * The number of threads that Jacobi sweeps (and retrograde layers) are split across. Results do not depend on it.
+	 */
+	int threads=1;
+	
+	/**
+	 * In prioritized mode, states are backed up by {@link PrioritizedSweeping} until none has a Bellman error above 
+	 * this threshold. Negative means prioritized mode is off.
+	 */
+	double theta=-1;
+	
+	/**
+	 * Whether to run in retrograde mode, where the values are computed exactly in one backward pass by a 
+	 * {@link RetrogradeSolver} instead of by sweeps. Uses {@link #threads} threads per layer.
+	 */
+	boolean retrograde=false;
+	
+	/**
+	 * The number of backups done by the last prioritized sweeping run
+	 */
+	long prioritizedBackups=0;
+	
+	/**
+	 * Jacobi sweeps hand at most this many states to a single task.
+	 */
+	static final int SWEEP_CHUNK=256;
+	
+	
+	/**
+	 * This constructor loads the agent's policy from {@link #getPolicyFileName()} if that is a valid policy file (see
+	 * {@link #savePolicyToFile}), and otherwise trains the agent offline first (or takes the solution from the 
+	 * {@link SolvedModelCache}) and sets its policy. A loaded agent has no values, only the policy.
 	 */
 	public ValueIterationAgent()
 	{
 		super();
 		mdp=new TTTMDP();
 		this.discount=0.9;
-		initValues();
-		train();
+		if (loadPolicyFromFile()==null)
+			solveCached();
 	}
 	
 	
@@ -65,8 +156,32 @@ public class ValueIterationAgent extends Agent {
 		
 		this.discount=discountFactor;
 		mdp=new TTTMDP();
-		initValues();
-		train();
+		solveCached();
+	}
+	
+	/**
+	 * Trains the agent with its current settings, unless an agent with the same settings has already done so in this
+	 * process, in which case its solution is taken from the {@link SolvedModelCache}. Either way the agent ends up with
+	 * the policy, the values in {@link #values} over {@link #index}, and {@link #valueFunction} and 
+	 * {@link #optimalMoves} filled in as if it had trained itself.
+	 */
+	protected void solveCached()
+	{
+		SolvedModelCache.Key key=new SolvedModelCache.Key("value-iteration-k"+k, symmetric, discount, mdp);
+		SolvedModel model=SolvedModelCache.getInstance().get(key, new Supplier<SolvedModel>() {
+			public SolvedModel get()
+			{
+				initValues();
+				train();
+				return SolvedModel.fromMaps(StateIndex.getInstance(symmetric), valueFunction, (DensePolicy)policy);
+			}
+		});
+		
+		this.index=model.getIndex();
+		this.values=model.copyValues();
+		super.policy=model.getPolicy();
+		if (this.valueFunction.isEmpty())
+			model.fillMaps(this.valueFunction, this.optimalMoves);
 	}
 	
 	/**
@@ -77,7 +192,7 @@ public class ValueIterationAgent extends Agent {
 	public void initValues()
 	{
 		
-		List<Game> allGames=Game.generateAllValidGames('X');//all valid games where it is X's turn, or it's terminal.
+		List<Game> allGames=Game.generateAllValidGames('X', symmetric);//all valid games where it is X's turn, or it's terminal.
 		for(Game g: allGames)
 			this.valueFunction.put(g, 0.0);
 		
@@ -86,30 +201,182 @@ public class ValueIterationAgent extends Agent {
 	}
 	
 	
-	
+	/**
+	 * Sets the MDP parameters. This constructor does not train the agent: set any options (e.g. {@link #setSymmetric}, 
+	 * {@link #setDense}, {@link #setPrioritized}, {@link #setRetrograde}) and then call {@link #train()}.
+	 */
 	public ValueIterationAgent(double discountFactor, double winReward, double loseReward, double livingReward, double drawReward)
 	{
 		this.discount=discountFactor;
 		mdp=new TTTMDP(winReward, loseReward, livingReward, drawReward);
 	}
 	
+	/**
+	 * Turns symmetry-reduced mode on or off. Must be set before the values are initialised.
+	 * @param symmetric
+	 */
+	public void setSymmetric(boolean symmetric)
+	{
+		this.symmetric=symmetric;
+	}
+	
+	/**
+	 * Turns dense mode on or off, see {@link #dense}.
+	 * @param dense
+	 */
+	public void setDense(boolean dense)
+	{
+		this.dense=dense;
+	}
+	
+	/**
+	 * Turns synchronous (Jacobi) sweeps on or off, see {@link #jacobi}. Only used in dense mode.
+	 * @param jacobi
+	 */
+	public void setJacobi(boolean jacobi)
+	{
+		this.jacobi=jacobi;
+	}
+	
+	/**
+	 * Sets the number of threads that Jacobi sweeps use. With more than one thread the states of each sweep are split 
+	 * across a {@link ForkJoinPool}; the values are identical to those of the single-threaded Jacobi sweeps.
+	 * @param threads
+	 */
+	public void setThreads(int threads)
+	{
+		if (threads<1)
+			throw new IllegalArgumentException("Need at least one thread");
+		
+		this.threads=threads;
+	}
+	
+	/**
+	 * Turns on prioritized mode: values are computed by {@link PrioritizedSweeping} on the compiled MDP, which backs up
+	 * states in order of their Bellman error until no error is above {@code theta}, instead of by sweeps. A negative 
+	 * theta turns it off.
+	 * @param theta
+	 */
+	public void setPrioritized(double theta)
+	{
+		this.theta=theta;
+	}
+	
+	/**
+	 * Turns retrograde mode on or off, see {@link #retrograde}.
+	 * @param retrograde
+	 */
+	public void setRetrograde(boolean retrograde)
+	{
+		this.retrograde=retrograde;
+	}
+	
+	/**
+	 * Turns on convergence mode: iterate until the Bellman residual of a sweep is below {@code epsilon}, or until the 
+	 * greedy policy has been stable for {@code stableSweeps} sweeps in a row (if {@code stableSweeps} is positive), 
+	 * rather than for a fixed {@link #k} sweeps.
+	 * @param epsilon
+	 * @param stableSweeps
+	 */
+	public void setConvergence(double epsilon, int stableSweeps)
+	{
+		this.epsilon=epsilon;
+		this.stableSweeps=stableSweeps;
+	}
+	
+	/**
+	 * @param listener told about every sweep from now on
+	 */
+	public void addSweepListener(SweepListener listener)
+	{
+		this.listeners.add(listener);
+	}
+	
+	/**
+	 * @return the number of sweeps to do at most: {@link #k}, or {@link #maxSweeps} in convergence mode.
+	 */
+	int sweepLimit()
+	{
+		return (epsilon>=0) ? maxSweeps : k;
+	}
+	
+	/**
+	 * Tells the listeners about a finished sweep, and decides whether to stop.
+	 * @return true if no more sweeps are needed.
+	 */
+	boolean endSweep(int sweep, double residual, int policyChanges, long nanos)
+	{
+		for(SweepListener l: listeners)
+			l.sweepDone(sweep, residual, policyChanges, nanos);
+		
+		if (epsilon<0)
+			return false;
+		
+		stableRun = (policyChanges==0) ? stableRun+1 : 0;
+		
+		return residual<epsilon || (stableSweeps>0 && stableRun>=stableSweeps);
+	}
+	
+	/**
+	 * @param g
+	 * @return the key under which the value of {@code g} is stored: {@code g} itself, or its canonical form in 
+	 * symmetry-reduced mode.
+	 */
+	Game key(Game g)
+	{
+		return symmetric ? g.canonical() : g;
+	}
+
+	/**
+	 * @return the value of {@code g} in {@link #valueFunction}, or 0 if it has none (e.g. the agent has not trained)
+	 */
+	public double getValue(Game g)
+	{
+		Double v=this.valueFunction.get(key(g));
+		return (v==null) ? 0.0 : v;
+	}
+	
 	/**
 	 
 	
 	/*
-	 * Performs {@link #k} value iteration steps. After running this method, the {@link ValueIterationAgent#valueFunction} map should contain
+	 * Performs {@link #k} value iteration steps (or, in convergence mode, sweeps until converged, see {@link #epsilon}). After running this method, the {@link ValueIterationAgent#valueFunction} map should contain
 	 * the (current) values of each reachable state. You should use the {@link TTTMDP} provided to do this.
 	 * 
 	 *
 	 */
 	public void iterate()
 	{
+		if (retrograde)
+		{
+			iterateRetrograde();
+			return;
+		}
+		
+		if (theta>=0)
+		{
+			iteratePrioritized();
+			return;
+		}
 		
-		for (int i=0;i<=k;i++) {
+		if (dense)
+		{
+			iterateDense();
+			return;
+		}
+		
+		stableRun=0;
+		int limit=sweepLimit();
+		for (int i=0;i<limit;i++) {
 	
+			long start=System.nanoTime();
+			double residual=0;
+			int policyChanges=0;
 			Set <Game> allGames = this.valueFunction.keySet();
 			
 			for(Game g: allGames) {
+				
+				double oldValue = this.valueFunction.get(g);
 
 				List<Move> moves = g.getPossibleMoves();
 				double maxValue = -9999;
@@ -117,6 +384,7 @@ public class ValueIterationAgent extends Agent {
 				
 				if (g.isTerminal() == true){
 					this.valueFunction.put(g, 0.0);
+					residual = Math.max(residual, Math.abs(oldValue));
 				}
 				
 				else {
@@ -130,7 +398,7 @@ public class ValueIterationAgent extends Agent {
 							double probability = pro.get(j).prob;
 							double reward = pro.get(j).outcome.localReward;
 							Game sPrime = pro.get(j).outcome.sPrime;							
-							currentValue += probability*(reward + this.discount*this.valueFunction.get(sPrime));
+							currentValue += probability*(reward + this.discount*this.valueFunction.get(key(sPrime)));
 						} //close transitions for loop
 						
 						if (currentValue > maxValue) {
@@ -142,16 +410,213 @@ public class ValueIterationAgent extends Agent {
 					
 					//update value and move
 					this.valueFunction.put(g, maxValue);
-					this.optimalMoves.put(g, maxMove);
+					if (!maxMove.equals(this.optimalMoves.put(g, maxMove)))
+						policyChanges++;
+					residual = Math.max(residual, Math.abs(maxValue - oldValue));
 					
 				} //close if is terminal
 				
 			} //close games for loop
 			
+			if (endSweep(i+1, residual, policyChanges, System.nanoTime()-start))
+				break;
+			
 		}  //close k iterations for loop
 	
 	}
 	
+	/**
+	 * The same as {@link #iterate()}, but with the values in {@link #values}, and the MDP compiled into a 
+	 * {@link CompiledMDP} first. Successor values are found by array index rather than by hashing {@link Game} 
+	 * objects, and the sweeps allocate nothing. In {@link #jacobi} mode each sweep reads the previous sweep's values 
+	 * and may be split across {@link #threads} threads.
+	 */
+	protected void iterateDense()
+	{
+		this.index=StateIndex.getInstance(symmetric);
+		CompiledMDP model=this.mdp.compile(index);
+		int n=index.size();
+		if (this.values==null)
+			this.values=new double[n];
+		
+		int[] bestActions=new int[n];
+		Arrays.fill(bestActions, -1);
+		double[] next=jacobi ? new double[n] : values;
+		ForkJoinPool pool=(jacobi && threads>1) ? new ForkJoinPool(threads) : null;
+		
+		try {
+			stableRun=0;
+			int limit=sweepLimit();
+			for (int i=0;i<limit;i++) {
+				
+				long start=System.nanoTime();
+				SweepTask sweep=new SweepTask(model, 0, n, values, next, bestActions, this.discount);
+				if (pool!=null)
+					pool.invoke(sweep);
+				else
+					sweep.sweep();
+				
+				if (jacobi) {
+					double[] old=values;
+					values=next;
+					next=old;
+				}
+				
+				if (endSweep(i+1, sweep.residual, sweep.policyChanges, System.nanoTime()-start))
+					break;
+				
+			}
+		} finally {
+			if (pool!=null)
+				pool.shutdown();
+		}
+		
+		storeDense(model, bestActions);
+		
+	}
+	
+	/**
+	 * Computes the values with {@link PrioritizedSweeping} instead of sweeps, see {@link #setPrioritized}.
+	 */
+	protected void iteratePrioritized()
+	{
+		this.index=StateIndex.getInstance(symmetric);
+		CompiledMDP model=this.mdp.compile(index);
+		
+		PrioritizedSweeping solver=new PrioritizedSweeping(model, this.discount, this.theta);
+		solver.solve();
+		this.values=solver.getValues();
+		this.prioritizedBackups=solver.getBackups();
+		
+		storeDense(model, solver.getBestActions());
+	}
+	
+	/**
+	 * Computes the values exactly with a {@link RetrogradeSolver} instead of sweeps, see {@link #setRetrograde}.
+	 */
+	protected void iterateRetrograde()
+	{
+		this.index=StateIndex.getInstance(symmetric);
+		CompiledMDP model=this.mdp.compile(index);
+		
+		RetrogradeSolver solver=new RetrogradeSolver(model, this.discount);
+		solver.setThreads(this.threads);
+		solver.solve();
+		this.values=solver.getValues();
+		
+		storeDense(model, solver.getBestActions());
+	}
+	
+	/**
+	 * Fills in {@link #valueFunction} and {@link #optimalMoves} from {@link #values} and the given best action of each 
+	 * state in {@code model}.
+	 */
+	void storeDense(CompiledMDP model, int[] bestActions)
+	{
+		this.valueFunction.clear();
+		this.optimalMoves.clear();
+		for(int id=0;id<model.numStates();id++) {
+			Game g=index.getGame(id);
+			this.valueFunction.put(g, values[id]);
+			if (bestActions[id]>=0)
+				this.optimalMoves.put(g, model.getMove(id, bestActions[id]));
+		}
+	}
+	
+	/**
+	 * A sweep over a range of states. Backs up the states with ids {@code from} to {@code to-1}: sets {@code out[id]} to 
+	 * the best action value in state id given the values {@code in}, and {@code bestActions[id]} to that action (-1 for
+	 * terminal states, which are worth 0). Without a pool, {@link #sweep()} backs up the whole range in this thread, in
+	 * place if {@code in} and {@code out} are the same array. A Jacobi sweep can instead be invoked in a 
+	 * {@link ForkJoinPool}: {@link #compute()} splits the range in halves until it is at most {@link #SWEEP_CHUNK} 
+	 * states long. Every state is written by exactly one task and only reads {@code in}, so the result does not depend
+	 * on the number of threads or on scheduling.
+	 */
+	static class SweepTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final CompiledMDP model;
+		final int from, to;
+		final double[] in, out;
+		final int[] bestActions;
+		final double discount;
+		
+		/**
+		 * Set by {@link #compute()}: the largest change in value in the range
+		 */
+		double residual;
+		
+		/**
+		 * Set by {@link #compute()}: the number of states in the range whose best action changed
+		 */
+		int policyChanges;
+		
+		SweepTask(CompiledMDP model, int from, int to, double[] in, double[] out, int[] bestActions, double discount)
+		{
+			this.model=model;
+			this.from=from;
+			this.to=to;
+			this.in=in;
+			this.out=out;
+			this.bestActions=bestActions;
+			this.discount=discount;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (in==out || to-from<=SWEEP_CHUNK) {
+				sweep();
+				return;
+			}
+			
+			int mid=(from+to)>>>1;
+			SweepTask left=new SweepTask(model, from, mid, in, out, bestActions, discount);
+			SweepTask right=new SweepTask(model, mid, to, in, out, bestActions, discount);
+			invokeAll(left, right);
+			residual=Math.max(left.residual, right.residual);
+			policyChanges=left.policyChanges+right.policyChanges;
+		}
+		
+		/**
+		 * Backs up the whole range in this thread, without forking.
+		 */
+		void sweep()
+		{
+			for(int id=from;id<to;id++) {
+				
+				double oldValue=in[id];
+				int first=model.actionStart[id];
+				int last=model.actionStart[id+1];
+				if (first==last) {
+					//terminal
+					out[id]=0.0;
+					residual=Math.max(residual, Math.abs(oldValue));
+					continue;
+				}
+				
+				double maxValue = Double.NEGATIVE_INFINITY;
+				int maxAction = CompiledMDP.NO_ACTION;
+				for(int a=first;a<last;a++) {
+					double currentValue = model.qValue(a, in, discount);
+					if (currentValue > maxValue) {
+						maxValue = currentValue;
+						maxAction = a;
+					}
+				}
+				
+				out[id]=maxValue;
+				residual=Math.max(residual, Math.abs(maxValue-oldValue));
+				if (bestActions[id]!=maxAction) {
+					bestActions[id]=maxAction;
+					policyChanges++;
+				}
+				
+			}
+		}
+	}
+	
 	/**This method should be run AFTER the train method to extract a policy according to {@link ValueIterationAgent#valueFunction}
 	 * You will need to do a single step of expectimax from each game (state) key in {@link ValueIterationAgent#valueFunction} 
 	 * to extract a policy.
@@ -160,8 +625,8 @@ public class ValueIterationAgent extends Agent {
 	 */
 	public Policy extractPolicy()
 	{
-		//create a policy from optimalMoves HashMap
-		Policy pol = new Policy(this.optimalMoves);
+		//create a dense policy from optimalMoves HashMap
+		Policy pol = new DensePolicy(StateIndex.getInstance(symmetric), this.optimalMoves);
 		return pol;
 	}
 	
@@ -171,6 +636,9 @@ public class ValueIterationAgent extends Agent {
 	 */
 	public void train()
 	{
+		if (!dense && theta<0 && !retrograde && this.valueFunction.isEmpty())
+			initValues();
+		
 		/**
 		 * First run value iteration
 		 */
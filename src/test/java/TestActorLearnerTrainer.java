@@ -0,0 +1,77 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import ticTacToe.ActorLearnerTrainer;
+import ticTacToe.Agent;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.TTTEnvironment;
+
+public class TestActorLearnerTrainer {
+	
+	/**
+	 * Makes opponents that throw {@code exception}, or else {@code error}, when asked for a move.
+	 */
+	private static Supplier<Agent> failingOpponents(final RuntimeException exception, final Error error)
+	{
+		return new Supplier<Agent>() {
+			public Agent get()
+			{
+				return new Agent(new Policy() {
+					public Move getMove(Game g)
+					{
+						if (exception!=null)
+							throw exception;
+						throw error;
+					}
+				});
+			}
+		};
+	}
+	
+	@Test
+	public void testTrain() throws IllegalMoveException {
+		QLearningAgent agent=new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 0, 0.9);
+		ActorLearnerTrainer trainer=new ActorLearnerTrainer(agent, 2, null);
+		trainer.setSnapshotInterval(256);
+		trainer.train(2000);
+		
+		assertEquals(4000, trainer.getEpisodes());
+		assertTrue(trainer.getUpdates()>=4000);
+		assertTrue(trainer.getSnapshots()>1);
+	}
+	
+	@Test
+	public void testActorExceptionIsRethrown() throws IllegalMoveException {
+		QLearningAgent agent=new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 0, 0.9);
+		ActorLearnerTrainer trainer=new ActorLearnerTrainer(agent, 2, 
+				failingOpponents(new IllegalStateException("opponent failed"), null));
+		try {
+			trainer.train(10);
+			fail("the actor's exception was lost");
+		} catch (IllegalStateException e) {
+			assertEquals("opponent failed", e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testActorErrorIsRethrown() throws IllegalMoveException {
+		QLearningAgent agent=new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.1, 0, 0.9);
+		ActorLearnerTrainer trainer=new ActorLearnerTrainer(agent, 2, failingOpponents(null, new StackOverflowError()));
+		try {
+			trainer.train(10);
+			fail("the actor's error was lost");
+		} catch (StackOverflowError e) {
+		}
+	}
+
+}
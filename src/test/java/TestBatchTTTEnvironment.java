@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import ticTacToe.BatchTTTEnvironment;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.StateIndex;
+
+public class TestBatchTTTEnvironment {
+	
+	private static final int FULL=0x1FF;
+	
+	/**
+	 * @return a random empty cell of every game
+	 */
+	private static int[] randomActions(BatchTTTEnvironment env, Random random)
+	{
+		int[] actions=new int[env.size()];
+		for(int b=0;b<actions.length;b++) {
+			int empty=env.emptyCells(b);
+			for(int n=random.nextInt(Integer.bitCount(empty));n>0;n--)
+				empty&=empty-1;
+			actions[b]=Integer.numberOfTrailingZeros(empty);
+		}
+		return actions;
+	}
+	
+	@Test
+	public void testStep() throws IllegalMoveException {
+		BatchTTTEnvironment env=new BatchTTTEnvironment(64);
+		StateIndex index=StateIndex.getInstance(false);
+		Random random=new Random(1);
+		
+		for(int step=0;step<1000;step++) {
+			env.step(randomActions(env, random));
+			for(int b=0;b<env.size();b++) {
+				double reward=env.getRewards()[b];
+				if (env.getDone()[b]) {
+					assertTrue(reward==10.0 || reward==-50.0 || reward==0.0);
+					assertEquals(1, env.getStates()[b]);
+					assertEquals(FULL, env.emptyCells(b));
+				} else {
+					assertEquals(-1.0, reward, 0.0);
+					assertEquals(env.getNextStates()[b], env.getStates()[b]);
+					assertTrue(index.getIdOfHash(env.getStates()[b])>=0);
+				}
+			}
+		}
+		assertTrue(env.getEpisodes()>0);
+	}
+	
+	@Test
+	public void testIllegalActionStepsNothing() throws IllegalMoveException {
+		BatchTTTEnvironment env=new BatchTTTEnvironment(4);
+		Random random=new Random(2);
+		env.step(randomActions(env, random));
+		
+		int[] states=env.getStates().clone();
+		int[] empty=new int[env.size()];
+		for(int b=0;b<env.size();b++)
+			empty[b]=env.emptyCells(b);
+		
+		int[] actions=randomActions(env, random);
+		//a cell that is already taken, in the last game
+		actions[3]=Integer.numberOfTrailingZeros(FULL&~empty[3]);
+		try {
+			env.step(actions);
+			fail("an illegal action was accepted");
+		} catch (IllegalMoveException e) {
+		}
+		
+		assertArrayEquals(states, env.getStates());
+		for(int b=0;b<env.size();b++)
+			assertEquals(empty[b], env.emptyCells(b));
+	}
+
+}
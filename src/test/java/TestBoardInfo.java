@@ -0,0 +1,55 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ticTacToe.Game;
+
+/**
+ * Checks the state and the empty cells that {@link Game} looks up for each of the 3^9 boards against a scan of the
+ * board's lines.
+ */
+public class TestBoardInfo {
+
+	/**
+	 * The eight lines, as cells 3*x+y: rows, then columns, then the two diagonals, the order in which a game has always
+	 * checked them, which decides the state of the (invalid) boards where both players have a line.
+	 */
+	static final int[][] LINES = { { 0, 1, 2 }, { 3, 4, 5 }, { 6, 7, 8 }, { 0, 3, 6 }, { 1, 4, 7 }, { 2, 5, 8 },
+			{ 0, 4, 8 }, { 2, 4, 6 } };
+
+	private static int scan(char[][] board)
+	{
+		for(int[] line: LINES) {
+			char c=board[line[0]/3][line[0]%3];
+			if (c!=' ' && c==board[line[1]/3][line[1]%3] && c==board[line[2]/3][line[2]%3])
+				return c=='X' ? Game.X_WON : Game.O_WON;
+		}
+
+		for(int cell=0;cell<9;cell++)
+			if (board[cell/3][cell%3]==' ')
+				return Game.ONGOING;
+		return Game.DRAW;
+	}
+
+	@Test
+	public void testAllBoards() {
+		int boards=1;
+		for(int i=0;i<9;i++)
+			boards*=3;
+
+		for(int code=0;code<boards;code++) {
+			Game g=Game.inverseHash(3*code+1);
+			assertEquals(3*code+1, g.hashCode());
+
+			char[][] board=g.getBoard();
+			assertEquals(g.toString(), scan(board), g.evaluateGameState());
+
+			int empty=0;
+			for(int cell=0;cell<9;cell++)
+				if (board[cell/3][cell%3]==' ')
+					empty|=1<<cell;
+			assertEquals(g.toString(), empty, g.emptyCells());
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.CompiledMDP;
+import ticTacToe.StateIndex;
+import ticTacToe.TTTMDP;
+
+public class TestCompiledMDP {
+	
+	@Test
+	public void testLargeNegativeRewardsStillHaveActions() {
+		CompiledMDP model=new TTTMDP(-20000.0, -50000.0, -10000.0, -30000.0).compile(StateIndex.getInstance(false));
+		double[] values=new double[model.numStates()];
+		
+		for(int id=0;id<model.numStates();id++) {
+			int a=model.bestAction(id, values, 0.9);
+			if (model.isTerminal(id)) {
+				assertEquals(CompiledMDP.NO_ACTION, a);
+				assertEquals(0.0, model.backup(id, values, 0.9), 0.0);
+				continue;
+			}
+			
+			assertTrue(a!=CompiledMDP.NO_ACTION);
+			double backup=model.backup(id, values, 0.9);
+			assertTrue(backup<=-9999);
+			assertEquals(model.qValue(a, values, 0.9), backup, 0.0);
+		}
+	}
+
+}
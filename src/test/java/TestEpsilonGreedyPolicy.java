@@ -0,0 +1,81 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ticTacToe.DenseQTable;
+import ticTacToe.EpsilonGreedyPolicy;
+import ticTacToe.EpsilonGreedyPolicy.Decay;
+import ticTacToe.StateIndex;
+
+public class TestEpsilonGreedyPolicy {
+
+	private static EpsilonGreedyPolicy policy(Decay decay)
+	{
+		return new EpsilonGreedyPolicy(new DenseQTable(StateIndex.getInstance(false)), decay, 0.5, 0.05, 1000);
+	}
+
+	@Test
+	public void testConstant() {
+		EpsilonGreedyPolicy constant=new EpsilonGreedyPolicy(new DenseQTable(StateIndex.getInstance(false)), 0.1);
+		for(int episode: new int[] {0, 1, 1000, 1000000})
+			assertEquals(0.1, constant.epsilon(episode), 0.0);
+
+		assertEquals(0.5, policy(Decay.CONSTANT).epsilon(1000000), 0.0);
+	}
+
+	@Test
+	public void testLinearDecay() {
+		EpsilonGreedyPolicy linear=policy(Decay.LINEAR);
+		assertEquals(0.5, linear.epsilon(0), 1e-12);
+		assertEquals(0.3875, linear.epsilon(250), 1e-12);
+		assertEquals(0.275, linear.epsilon(500), 1e-12);
+		assertEquals(0.05, linear.epsilon(1000), 1e-12);
+
+		//and stays at the floor
+		for(int episode=1000;episode<=100000;episode+=999)
+			assertEquals(0.05, linear.epsilon(episode), 0.0);
+	}
+
+	@Test
+	public void testExponentialDecay() {
+		EpsilonGreedyPolicy exponential=policy(Decay.EXPONENTIAL);
+		assertEquals(0.5, exponential.epsilon(0), 1e-12);
+		assertEquals(0.05+0.45/Math.E, exponential.epsilon(1000), 1e-12);
+		assertEquals(0.05+0.45/(Math.E*Math.E), exponential.epsilon(2000), 1e-12);
+
+		//falls towards the floor, and never below it
+		double last=exponential.epsilon(0);
+		for(int episode=1;episode<=100000;episode++) {
+			double epsilon=exponential.epsilon(episode);
+			assertTrue(epsilon<=last);
+			assertTrue(epsilon>=0.05);
+			last=epsilon;
+		}
+		assertEquals(0.05, last, 1e-12);
+	}
+
+	@Test
+	public void testSetEpisode() {
+		EpsilonGreedyPolicy linear=policy(Decay.LINEAR);
+		assertEquals(0.5, linear.getEpsilon(), 0.0);
+
+		linear.setEpisode(500);
+		assertEquals(500, linear.getEpisode());
+		assertEquals(linear.epsilon(500), linear.getEpsilon(), 0.0);
+
+		linear.setEpisode(2000);
+		assertEquals(0.05, linear.getEpsilon(), 0.0);
+	}
+
+	@Test
+	public void testDecayEpisodesMustBePositive() {
+		try {
+			new EpsilonGreedyPolicy(new DenseQTable(StateIndex.getInstance(false)), Decay.LINEAR, 0.5, 0.05, 0);
+			fail("a decay over 0 episodes was accepted");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+}
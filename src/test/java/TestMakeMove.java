@@ -0,0 +1,72 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import ticTacToe.Game;
+import ticTacToe.Successors;
+
+public class TestMakeMove {
+	
+	private int visited;
+	
+	/**
+	 * Visits every successor of {@code g} in place, checks it against {@link Game#getAllSuccessorGames()}, recurses, 
+	 * and checks that {@code g} is restored exactly.
+	 */
+	private void visit(Game g, Successors[] cursors, int depth)
+	{
+		visited++;
+		int hash=g.hashCode();
+		int state=g.getState();
+		int empty=g.emptyCells();
+		String board=g.toString();
+		
+		List<Game> expected=g.isTerminal() ? null : g.getAllSuccessorGames();
+		Successors s=g.successors(cursors[depth]);
+		int i=0;
+		while (s.next()) {
+			Game copy=expected.get(i++);
+			assertEquals(copy.hashCode(), g.hashCode());
+			assertEquals(copy.getState(), g.getState());
+			assertEquals(copy.emptyCells(), g.emptyCells());
+			assertEquals(copy.toString(), g.toString());
+			visit(g, cursors, depth+1);
+		}
+		if (expected!=null)
+			assertEquals(expected.size(), i);
+		
+		assertEquals(hash, g.hashCode());
+		assertEquals(state, g.getState());
+		assertEquals(empty, g.emptyCells());
+		assertEquals(board, g.toString());
+	}
+	
+	@Test
+	public void testMakeUnmakeRestoresEveryReachableState() {
+		Successors[] cursors=new Successors[10];
+		for(int d=0;d<cursors.length;d++)
+			cursors[d]=new Successors();
+		
+		visited=0;
+		visit(new Game(), cursors, 0);
+		//every move sequence of the game tree, from the empty board
+		assertEquals(549946, visited);
+	}
+	
+	@Test
+	public void testRestoreLeavesLoopEarly() {
+		Game g=new Game();
+		int hash=g.hashCode();
+		Successors s=g.successors(new Successors());
+		s.next();
+		s.next();
+		assertFalse(hash==g.hashCode());
+		s.restore();
+		assertEquals(hash, g.hashCode());
+		assertEquals(Game.ONGOING, g.getState());
+	}
+
+}
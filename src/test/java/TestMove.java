@@ -0,0 +1,43 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.Move;
+
+public class TestMove {
+	
+	@Test
+	public void testSharedMoves() {
+		for(int cell=0;cell<9;cell++) {
+			assertSame(Move.of('X', cell), Move.of('X', cell/3, cell%3));
+			assertEquals(new Move('O', cell/3, cell%3), Move.of('O', cell));
+			assertEquals(cell, Move.of('O', cell).getCell());
+		}
+	}
+	
+	@Test
+	public void testSharedAgentCannotBeRenamed() {
+		Move m=Move.of('X', 4);
+		try {
+			m.who.setName('O');
+			fail("the agent of a shared move was renamed");
+		} catch (UnsupportedOperationException e) {
+		}
+		assertEquals('X', m.who.getName());
+		assertEquals('X', Move.of('X', 0).getPlayer());
+	}
+	
+	@Test
+	public void testPlayerIsFixedWhenMoveIsMade() {
+		Agent a=new Agent();
+		a.setName('O');
+		Move m=new Move(a, 1, 1);
+		a.setName('X');
+		assertEquals('O', m.getPlayer());
+		assertEquals(Move.of('O', 4), m);
+	}
+
+}
@@ -0,0 +1,130 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.DenseQTable;
+import ticTacToe.EpsilonGreedyPolicy;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.QLearningAgent;
+import ticTacToe.TTTEnvironment;
+
+/**
+ * Plays one scripted game, X 0, O 3, X 1, O 4, X 2 (X wins), with rewards of -1, -1 and 10, and checks the Q-values
+ * Q(lambda) and n-step Q-learning leave, worked out by hand with alpha 0.5 and gamma 0.9.
+ */
+public class TestMultiStepQLearning {
+
+	/**
+	 * Plays the first empty cell of the top row, whatever the Q-values say.
+	 */
+	private static class ScriptedAgent extends QLearningAgent {
+
+		ScriptedAgent()
+		{
+			super(new TTTEnvironment(new Agent(new Policy() {
+				public Move getMove(Game g)
+				{
+					return g.isLegal(Move.of('O', 3)) ? Move.of('O', 3) : Move.of('O', 4);
+				}
+			}), 10.0, -50.0, -1.0, 0.0), 0.5, 0, 0.9);
+		}
+
+		@Override
+		protected EpsilonGreedyPolicy newExploration()
+		{
+			return new EpsilonGreedyPolicy(getQTable(), 0.0) {
+				public int selectCell(Game g)
+				{
+					for(int cell=0;cell<3;cell++)
+						if (g.isLegal(Move.of('X', cell)))
+							return cell;
+					return -1;
+				}
+			};
+		}
+	}
+
+	final Game s0;
+	final Game s1;
+	final Game s2;
+
+	public TestMultiStepQLearning() throws IllegalMoveException {
+		s0=new Game();
+		s1=new Game(s0);
+		s1.executeMove(Move.of('X', 0));
+		s1.executeMove(Move.of('O', 3));
+		s2=new Game(s1);
+		s2.executeMove(Move.of('X', 1));
+		s2.executeMove(Move.of('O', 4));
+	}
+
+	/**
+	 * Makes the scripted moves greedy, each with a Q-value of 1, except that in s1 {@code explore} makes cell 2 the
+	 * greedy one and the scripted cell 1 exploratory.
+	 */
+	private ScriptedAgent agent(boolean explore)
+	{
+		ScriptedAgent agent=new ScriptedAgent();
+		agent.setSymmetric(false);
+		DenseQTable q=agent.getQTable();
+		q.setQValue(s0, Move.of('X', 0), 1.0);
+		q.setQValue(s1, Move.of('X', explore ? 2 : 1), 1.0);
+		q.setQValue(s2, Move.of('X', 2), 1.0);
+		return agent;
+	}
+
+	private void assertQValues(QLearningAgent agent, double q0, double q1, double q2)
+	{
+		DenseQTable q=agent.getQTable();
+		assertEquals(q0, q.getQValue(s0, Move.of('X', 0)), 1e-12);
+		assertEquals(q1, q.getQValue(s1, Move.of('X', 1)), 1e-12);
+		assertEquals(q2, q.getQValue(s2, Move.of('X', 2)), 1e-12);
+	}
+
+	@Test
+	public void testTracesOfGreedyEpisode() {
+		ScriptedAgent agent=agent(false);
+		agent.setTraces(1.0);
+		agent.train();
+
+		//TD errors -1.1, -1.1 and 9, each applied with the traces 1, 0.9, 0.81 of the moves so far
+		assertQValues(agent, 1-0.55-0.495+3.645, 1-0.55+4.05, 1+4.5);
+	}
+
+	@Test
+	public void testExploratoryMoveCutsTraces() {
+		ScriptedAgent agent=agent(true);
+		agent.setTraces(1.0);
+		agent.train();
+
+		//the first move only gets its own TD error, -1.1. The exploratory move starts a new trace, with Q=0: its own
+		//TD error is -0.1, and the last one 9 with a trace of 0.9
+		assertQValues(agent, 1-0.55, -0.05+4.05, 1+4.5);
+	}
+
+	@Test
+	public void testNStepReturns() {
+		ScriptedAgent agent=agent(false);
+		agent.setNStep(2);
+		agent.train();
+
+		//Q(s0) <- -1 + 0.9*(-1) + 0.81*maxQ(s2), Q(s1) <- -1 + 0.9*10, Q(s2) <- 10
+		assertQValues(agent, 0.5*1+0.5*(-1-0.9+0.81), 0.5*1+0.5*8, 0.5*1+0.5*10);
+	}
+
+	@Test
+	public void testExploratoryMoveTruncatesNStepReturn() {
+		ScriptedAgent agent=agent(true);
+		agent.setNStep(3);
+		agent.train();
+
+		//Q(s0) is backed up before the exploratory move, with -1 + 0.9*maxQ(s1), and the other two at the end of the
+		//game, with -1 + 0.9*10 and 10
+		assertQValues(agent, 0.5*1+0.5*(-1+0.9), 0.5*0+0.5*8, 0.5*1+0.5*10);
+	}
+
+}
@@ -0,0 +1,80 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import ticTacToe.Agent;
+import ticTacToe.AtomicQTable;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.Policy;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.StateIndex;
+import ticTacToe.TTTEnvironment;
+
+public class TestParallelQLearning {
+	
+	@Test
+	public void testConcurrentAddsAreNotLost() throws InterruptedException {
+		final AtomicQTable qTable=new AtomicQTable(StateIndex.getInstance(false));
+		final int adds=100000;
+		Thread[] threads=new Thread[4];
+		for(int t=0;t<threads.length;t++) {
+			threads[t]=new Thread() {
+				public void run()
+				{
+					for(int i=0;i<adds;i++)
+						qTable.add(9, 1.0);
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread t: threads)
+			t.join();
+		
+		assertEquals(threads.length*adds, qTable.get(9), 0.0);
+	}
+	
+	@Test
+	public void testParallelTraining() {
+		QLearningAgent agent=new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.3, 0, 0.9);
+		agent.setParallel(4, 5000, null);
+		agent.train();
+		
+		assertTrue(agent.getTrainingNanos()>0);
+		assertNotNull(agent.getPolicy().getMove(new Game()));
+		
+		//the greedy policy, without exploration
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(new Agent(agent.getPolicy()), new RandomAgent(), 100);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertTrue(results[0]>results[1]);
+	}
+	
+	@Test
+	public void testFailingWorkerFailsTraining() {
+		QLearningAgent agent=new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.3, 0, 0.9);
+		agent.setParallel(4, 100, new Supplier<Agent>() {
+			public Agent get()
+			{
+				return new Agent(new Policy() {
+					public Move getMove(Game g)
+					{
+						throw new IllegalStateException("opponent failed");
+					}
+				});
+			}
+		});
+		try {
+			agent.train();
+			fail("a worker's exception was lost");
+		} catch (IllegalStateException e) {
+			assertEquals("opponent failed", e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,198 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import ticTacToe.DensePolicy;
+import ticTacToe.Game;
+import ticTacToe.MappedPolicy;
+import ticTacToe.PolicyFile;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.QLearningAgent;
+import ticTacToe.SolvedModel;
+import ticTacToe.SolvedModelCache;
+import ticTacToe.StateIndex;
+import ticTacToe.TTTMDP;
+import ticTacToe.ValueIterationAgent;
+
+public class TestPolicyFile {
+	
+	private static DensePolicy solvedPolicy()
+	{
+		return solvedPolicy(false);
+	}
+	
+	private static DensePolicy solvedPolicy(boolean symmetric)
+	{
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		agent.setSymmetric(symmetric);
+		agent.setRetrograde(true);
+		agent.train();
+		return (DensePolicy)agent.getPolicy();
+	}
+	
+	@Test
+	public void testMappedPolicyCanBePersistedInModel() throws IOException {
+		File file=File.createTempFile("policy", ".policy");
+		File dir=Files.createTempDirectory("models").toFile();
+		final SolvedModelCache.Key key=new SolvedModelCache.Key("mapped", false, 0.9, new TTTMDP());
+		File modelFile=new File(dir, key.toString());
+		try {
+			PolicyFile.write(solvedPolicy(), file.getPath());
+			final MappedPolicy mapped=PolicyFile.load(file.getPath());
+			final StateIndex index=mapped.getIndex();
+			
+			SolvedModelCache cache=new SolvedModelCache(1L<<24);
+			cache.setDirectory(dir);
+			cache.get(key, new Supplier<SolvedModel>() {
+				public SolvedModel get()
+				{
+					return new SolvedModel(index, new double[index.size()], mapped);
+				}
+			});
+			
+			SolvedModelCache reader=new SolvedModelCache(1L<<24);
+			reader.setDirectory(dir);
+			SolvedModel model=reader.get(key, new Supplier<SolvedModel>() {
+				public SolvedModel get()
+				{
+					throw new AssertionError("the persisted model was not read back");
+				}
+			});
+			for(int id=0;id<index.size();id++)
+				assertEquals(mapped.getCell(id), model.getPolicy().getCell(id));
+		} finally {
+			file.delete();
+			modelFile.delete();
+			dir.delete();
+		}
+	}
+	
+	private static void assertRoundTrip(DensePolicy policy) throws IOException
+	{
+		File file=File.createTempFile("policy", ".policy");
+		try {
+			PolicyFile.write(policy, file.getPath());
+			MappedPolicy loaded=PolicyFile.load(file.getPath());
+			
+			assertEquals(policy.getIndex(), loaded.getIndex());
+			for(int id=0;id<policy.getIndex().size();id++)
+				assertEquals(policy.getCell(id), loaded.getCell(id));
+			for(Game g: Game.generateAllValidGames('X'))
+				if (!g.isTerminal())
+					assertEquals(policy.getMove(g), loaded.getMove(g));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testRoundTrip() throws IOException {
+		assertRoundTrip(solvedPolicy(false));
+	}
+	
+	@Test
+	public void testSymmetricRoundTrip() throws IOException {
+		assertRoundTrip(solvedPolicy(true));
+	}
+	
+	@Test
+	public void testCorruptFileRejected() throws IOException {
+		File file=File.createTempFile("policy", ".policy");
+		try {
+			PolicyFile.write(solvedPolicy(), file.getPath());
+			try (RandomAccessFile raf=new RandomAccessFile(file, "rw")) {
+				raf.seek(raf.length()-1);
+				int b=raf.read();
+				raf.seek(raf.length()-1);
+				raf.write(b^0x01);
+			}
+			try {
+				PolicyFile.load(file.getPath());
+				fail("a file with a bad checksum was loaded");
+			} catch (IOException e) {
+			}
+			
+			try (RandomAccessFile raf=new RandomAccessFile(file, "rw")) {
+				raf.setLength(raf.length()-1);
+			}
+			try {
+				PolicyFile.load(file.getPath());
+				fail("a truncated file was loaded");
+			} catch (IOException e) {
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Agents whose default constructors load from {@link #file}
+	 */
+	static String file;
+	
+	static class FileValueIterationAgent extends ValueIterationAgent {
+		@Override
+		public String getPolicyFileName()
+		{
+			return file;
+		}
+	}
+	
+	static class FilePolicyIterationAgent extends PolicyIterationAgent {
+		@Override
+		public String getPolicyFileName()
+		{
+			return file;
+		}
+	}
+	
+	static class FileQLearningAgent extends QLearningAgent {
+		@Override
+		public String getPolicyFileName()
+		{
+			return file;
+		}
+	}
+	
+	@Test
+	public void testAgentsLoadPolicyFile() throws IOException {
+		File f=File.createTempFile("policy", ".policy");
+		file=f.getPath();
+		try {
+			DensePolicy policy=solvedPolicy();
+			PolicyFile.write(policy, file);
+			
+			ValueIterationAgent vi=new FileValueIterationAgent();
+			PolicyIterationAgent pi=new FilePolicyIterationAgent();
+			QLearningAgent q=new FileQLearningAgent();
+			assertTrue(vi.getPolicy() instanceof MappedPolicy);
+			assertTrue(pi.getPolicy() instanceof MappedPolicy);
+			assertTrue(q.getPolicy() instanceof MappedPolicy);
+			for(Game g: Game.generateAllValidGames('X'))
+				if (!g.isTerminal()) {
+					assertEquals(policy.getMove(g), vi.getMove(g));
+					assertEquals(policy.getMove(g), pi.getMove(g));
+					//played without exploring
+					assertEquals(policy.getMove(g), q.getMove(g));
+				}
+			
+			//an invalid file is ignored, and the agent trains instead
+			try (RandomAccessFile raf=new RandomAccessFile(f, "rw")) {
+				raf.setLength(raf.length()-1);
+			}
+			assertFalse(new FileValueIterationAgent().getPolicy() instanceof MappedPolicy);
+		} finally {
+			f.delete();
+		}
+	}
+
+}
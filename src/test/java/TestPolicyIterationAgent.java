@@ -1,4 +1,5 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -13,6 +14,8 @@ import ticTacToe.Game;
 import ticTacToe.IllegalMoveException;
 import ticTacToe.PolicyIterationAgent;
 import ticTacToe.RandomAgent;
+import ticTacToe.TTTMDP;
+import ticTacToe.ValueIterationAgent;
 
 public class TestPolicyIterationAgent {
 
@@ -111,5 +114,76 @@ public class TestPolicyIterationAgent {
 		
 
 	}
+	
+	private static PolicyIterationAgent denseAgent(int evaluationSweeps, boolean incremental)
+	{
+		PolicyIterationAgent agent=new PolicyIterationAgent(new TTTMDP(), 0.9);
+		agent.setDense(true);
+		agent.setEvaluationSweeps(evaluationSweeps);
+		agent.setIncremental(incremental);
+		agent.train();
+		return agent;
+	}
+	
+	/**
+	 * @return an agent with the exact optimal values, see {@link ticTacToe.RetrogradeSolver}
+	 */
+	static ValueIterationAgent optimalAgent()
+	{
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		agent.setRetrograde(true);
+		agent.train();
+		return agent;
+	}
+	
+	@Test
+	public void testModifiedPolicyIterationIsOptimal() {
+		ValueIterationAgent optimal=optimalAgent();
+		PolicyIterationAgent full=denseAgent(0, false);
+		PolicyIterationAgent modified=denseAgent(3, false);
+		
+		for(Game g: Game.generateAllValidGames('X')) {
+			assertEquals(optimal.getValue(g), full.getValue(g), 1e-4);
+			assertEquals(optimal.getValue(g), modified.getValue(g), 1e-4);
+		}
+	}
+	
+	@Test
+	public void testIncrementalEvaluationMatchesFull() {
+		PolicyIterationAgent full=denseAgent(0, false);
+		PolicyIterationAgent incremental=denseAgent(0, true);
+		
+		for(Game g: Game.generateAllValidGames('X'))
+			assertEquals(full.getValue(g), incremental.getValue(g), 1e-6);
+	}
+	
+	@Test
+	public void testDenseLargeNegativeRewards() {
+		//every action value is below -9999 in many states, which must still get a move
+		PolicyIterationAgent agent=new PolicyIterationAgent(new TTTMDP(10000.0, -100000.0, -20000.0, 0.0), 0.9);
+		agent.setDense(true);
+		agent.train();
+		
+		ValueIterationAgent optimal=new ValueIterationAgent(0.9, 10000.0, -100000.0, -20000.0, 0.0);
+		optimal.setRetrograde(true);
+		optimal.train();
+		
+		for(Game g: Game.generateAllValidGames('X')) {
+			if (g.isTerminal())
+				continue;
+			assertNotNull(agent.getPolicy().getMove(g));
+			assertEquals(optimal.getValue(g), agent.getValue(g), 1.0);
+		}
+	}
+	
+	@Test
+	public void testLargeNegativeRewards() {
+		PolicyIterationAgent agent=new PolicyIterationAgent(new TTTMDP(10000.0, -100000.0, -20000.0, 0.0), 0.9);
+		agent.train();
+		
+		for(Game g: Game.generateAllValidGames('X'))
+			if (!g.isTerminal())
+				assertNotNull(agent.getPolicy().getMove(g));
+	}
 
 }
@@ -0,0 +1,49 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.DenseQTable;
+import ticTacToe.EpsilonGreedyPolicy;
+import ticTacToe.Game;
+import ticTacToe.Move;
+import ticTacToe.QLearningAgent;
+import ticTacToe.RandomAgent;
+import ticTacToe.RandomStreams;
+import ticTacToe.TTTEnvironment;
+
+public class TestRandomStreams {
+
+	/**
+	 * Trains a Q-Learning agent against a {@link RandomAgent}, exploring with a decaying epsilon and replaying
+	 * prioritized transitions, so that the opponent, the exploration and the replay buffer all draw random numbers.
+	 */
+	private static DenseQTable train(long seed)
+	{
+		RandomStreams.setSeed(seed);
+		QLearningAgent agent=new QLearningAgent(new TTTEnvironment(new RandomAgent()), 0.3, 2000, 0.9);
+		agent.setEpsilonDecay(EpsilonGreedyPolicy.Decay.LINEAR, 0.5, 0.05, 1000);
+		agent.setReplay(1000, 8, true);
+		agent.train();
+		return agent.getQTable();
+	}
+
+	@Test
+	public void testSameSeedSameQTable() {
+		DenseQTable first=train(42);
+		DenseQTable second=train(42);
+		DenseQTable other=train(43);
+
+		boolean differs=false;
+		for(Game g: Game.generateAllValidGames('X')) {
+			if (g.isTerminal())
+				continue;
+			for(Move m: g.getPossibleMoves()) {
+				assertEquals(first.getQValue(g, m), second.getQValue(g, m), 0.0);
+				differs|=first.getQValue(g, m)!=other.getQValue(g, m);
+			}
+		}
+		assertTrue("another seed should train another Q-Table", differs);
+	}
+
+}
@@ -0,0 +1,118 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.RandomStreams;
+import ticTacToe.ReplayBuffer;
+
+public class TestReplayBuffer {
+	
+	private static final int SAMPLES=200000;
+	
+	/**
+	 * @return how often each transition of {@code buffer} is sampled, as a fraction of {@link #SAMPLES}
+	 */
+	private static double[] frequencies(ReplayBuffer buffer)
+	{
+		double[] counts=new double[buffer.capacity()];
+		for(int k=0;k<SAMPLES;k++)
+			counts[buffer.sample()]++;
+		for(int i=0;i<counts.length;i++)
+			counts[i]/=SAMPLES;
+		return counts;
+	}
+	
+	/**
+	 * @return the priority a TD error gives, see {@link ReplayBuffer}
+	 */
+	private static double priority(double tdError)
+	{
+		return Math.pow(Math.abs(tdError)+1e-3, 0.6);
+	}
+	
+	@Test
+	public void testWrapAround() {
+		ReplayBuffer buffer=new ReplayBuffer(3, false);
+		for(int t=0;t<5;t++)
+			buffer.add(t, 10.0*t, t-1);
+		
+		assertEquals(3, buffer.size());
+		//transitions 3 and 4 replaced the oldest ones, 0 and 1
+		int[] expected={3, 4, 2};
+		for(int i=0;i<3;i++) {
+			assertEquals(expected[i], buffer.getSlot(i));
+			assertEquals(10.0*expected[i], buffer.getReward(i), 0.0);
+			assertEquals(expected[i]-1, buffer.getNextId(i));
+		}
+	}
+	
+	@Test
+	public void testPartlyFilledSamplesOnlyStored() {
+		RandomStreams.setSeed(1);
+		for(boolean prioritized: new boolean[] {false, true}) {
+			ReplayBuffer buffer=new ReplayBuffer(7, prioritized);
+			for(int t=0;t<3;t++)
+				buffer.add(t, 0.0, -1);
+			
+			double[] f=frequencies(buffer);
+			for(int i=3;i<7;i++)
+				assertEquals(0.0, f[i], 0.0);
+			for(int i=0;i<3;i++)
+				assertEquals(1.0/3, f[i], 0.01);
+		}
+	}
+	
+	@Test
+	public void testPrioritizedSamplingWithNonPowerOfTwoCapacity() {
+		RandomStreams.setSeed(2);
+		double[] errors={0.0, 1.0, 2.0, 5.0, 10.0};
+		ReplayBuffer buffer=new ReplayBuffer(errors.length, true);
+		double total=0;
+		for(int i=0;i<errors.length;i++) {
+			buffer.add(i, 0.0, -1);
+			buffer.updatePriority(i, errors[i]);
+			total+=priority(errors[i]);
+		}
+		
+		double[] f=frequencies(buffer);
+		for(int i=0;i<errors.length;i++)
+			assertEquals(priority(errors[i])/total, f[i], 0.01);
+	}
+	
+	@Test
+	public void testPriorityUpdates() {
+		RandomStreams.setSeed(3);
+		ReplayBuffer buffer=new ReplayBuffer(6, true);
+		for(int i=0;i<5;i++)
+			buffer.add(i, 0.0, -1);
+		
+		//new transitions start with the same priority, so sampling is uniform
+		double[] f=frequencies(buffer);
+		for(int i=0;i<5;i++)
+			assertEquals(0.2, f[i], 0.01);
+		
+		//a large TD error makes a transition sampled more, and weighted less
+		for(int i=0;i<5;i++)
+			buffer.updatePriority(i, i==2 ? 100.0 : 0.1);
+		f=frequencies(buffer);
+		double expected=priority(100.0)/(priority(100.0)+4*priority(0.1));
+		assertEquals(expected, f[2], 0.01);
+		assertTrue(buffer.weight(2)<buffer.weight(0));
+		assertEquals(1.0, buffer.weight(0), 0.0);
+		
+		//and the next transition gets the largest priority seen so far
+		buffer.add(5, 0.0, -1);
+		f=frequencies(buffer);
+		assertEquals(f[2], f[5], 0.01);
+	}
+	
+	@Test
+	public void testUniformWeights() {
+		ReplayBuffer buffer=new ReplayBuffer(4, false);
+		buffer.add(0, 0.0, -1);
+		buffer.updatePriority(0, 100.0);
+		assertEquals(1.0, buffer.weight(0), 0.0);
+	}
+
+}
@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
+import ticTacToe.RandomAgent;
+import ticTacToe.ValueIterationAgent;
+
+public class TestRetrogradeSolver {
+	
+	private static ValueIterationAgent retrogradeAgent()
+	{
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		agent.setRetrograde(true);
+		agent.train();
+		return agent;
+	}
+	
+	@Test
+	public void testDefensive() {
+		System.out.println("Against Defensive Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(retrogradeAgent(), new DefensiveAgent(), 50);
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testRandom() {
+		System.out.println("Against Random Agent:");
+		int[] results=TestPolicyIterationAgent.playAgainstEachOther(retrogradeAgent(), new RandomAgent(), 50);
+		
+		System.out.println("Wins: " + results[0] + " Losses: " + results[1] + " Draws: " + results[2]);
+		assertEquals(0, results[1]);
+		
+
+	}
+	
+	@Test
+	public void testLargeNegativeRewards() {
+		//every action value is below -9999, which must not make a state look terminal
+		ValueIterationAgent retrograde=new ValueIterationAgent(0.9, -20000.0, -50000.0, -10000.0, -30000.0);
+		retrograde.setRetrograde(true);
+		retrograde.train();
+		
+		ValueIterationAgent sweeps=new ValueIterationAgent(0.9, -20000.0, -50000.0, -10000.0, -30000.0);
+		sweeps.setDense(true);
+		sweeps.setConvergence(1e-9, 0);
+		sweeps.train();
+		
+		for(Game g: Game.generateAllValidGames('X')) {
+			if (g.isTerminal()) {
+				assertEquals(0.0, retrograde.getValue(g), 0.0);
+				continue;
+			}
+			assertNotNull(retrograde.getPolicy().getMove(g));
+			assertTrue(retrograde.getValue(g)<-9999);
+			assertEquals(sweeps.getValue(g), retrograde.getValue(g), 1e-6);
+		}
+	}
+	
+	@Test
+	public void testThreadsBitIdentical() {
+		ValueIterationAgent single=retrogradeAgent();
+		ValueIterationAgent parallel=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		parallel.setRetrograde(true);
+		parallel.setThreads(4);
+		parallel.train();
+		
+		for(Game g: Game.generateAllValidGames('X'))
+			assertEquals(Double.doubleToLongBits(single.getValue(g)), Double.doubleToLongBits(parallel.getValue(g)));
+	}
+
+}
@@ -0,0 +1,115 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import ticTacToe.DensePolicy;
+import ticTacToe.Game;
+import ticTacToe.SolvedModel;
+import ticTacToe.SolvedModelCache;
+import ticTacToe.StateIndex;
+import ticTacToe.TTTMDP;
+import ticTacToe.ValueIterationAgent;
+
+public class TestSolvedModelCache {
+
+	/**
+	 * Solves to a model of zeros, and counts how many times it was asked to.
+	 */
+	private static class CountingSolver implements Supplier<SolvedModel> {
+
+		int calls=0;
+
+		public SolvedModel get()
+		{
+			calls++;
+			StateIndex index=StateIndex.getInstance(false);
+			return new SolvedModel(index, new double[index.size()], new DensePolicy(index, new byte[index.size()]));
+		}
+	}
+
+	@Test
+	public void testCachedAgentMatchesFreshAgent() {
+		new ValueIterationAgent(0.9);
+		ValueIterationAgent cached=new ValueIterationAgent(0.9);
+
+		ValueIterationAgent fresh=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		fresh.train();
+
+		for(Game g: Game.generateAllValidGames('X')) {
+			assertEquals(fresh.getValue(g), cached.getValue(g), 0.0);
+			if (!g.isTerminal())
+				assertEquals(fresh.getPolicy().getMove(g), cached.getPolicy().getMove(g));
+		}
+	}
+
+	@Test
+	public void testFailedSolveReleasesKey() {
+		SolvedModelCache cache=new SolvedModelCache(1L<<24);
+		SolvedModelCache.Key key=new SolvedModelCache.Key("failing", false, 0.9, new TTTMDP());
+
+		try {
+			cache.get(key, new Supplier<SolvedModel>() {
+				public SolvedModel get()
+				{
+					throw new StackOverflowError();
+				}
+			});
+			fail("the solver's error was swallowed");
+		} catch (StackOverflowError e) {
+		}
+		assertEquals(0, cache.size());
+
+		CountingSolver solver=new CountingSolver();
+		assertNotNull(cache.get(key, solver));
+		assertEquals(1, solver.calls);
+	}
+
+	@Test
+	public void testTruncatedFileIsSolvedAgain() throws IOException {
+		File dir=Files.createTempDirectory("models").toFile();
+		SolvedModelCache.Key key=new SolvedModelCache.Key("counting", false, 0.9, new TTTMDP());
+		File file=new File(dir, key.toString());
+		try {
+			SolvedModelCache writer=new SolvedModelCache(1L<<24);
+			writer.setDirectory(dir);
+			CountingSolver solver=new CountingSolver();
+			writer.get(key, solver);
+			assertTrue(file.isFile());
+
+			SolvedModelCache reader=new SolvedModelCache(1L<<24);
+			reader.setDirectory(dir);
+			reader.get(key, solver);
+			assertEquals("an intact file should be read back", 1, solver.calls);
+
+			try (RandomAccessFile raf=new RandomAccessFile(file, "rw")) {
+				raf.setLength(raf.length()-1);
+			}
+			reader.clear();
+			reader.get(key, solver);
+			assertEquals("a truncated file should be solved again", 2, solver.calls);
+
+			try (RandomAccessFile raf=new RandomAccessFile(file, "rw")) {
+				raf.seek(raf.length()/2);
+				int b=raf.read();
+				raf.seek(raf.length()/2);
+				raf.write(b^0xFF);
+			}
+			reader.clear();
+			reader.get(key, solver);
+			assertEquals("a corrupt file should be solved again", 3, solver.calls);
+		} finally {
+			file.delete();
+			dir.delete();
+		}
+	}
+
+}
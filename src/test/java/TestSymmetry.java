@@ -0,0 +1,100 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import ticTacToe.DenseQTable;
+import ticTacToe.Game;
+import ticTacToe.IllegalMoveException;
+import ticTacToe.Move;
+import ticTacToe.PolicyIterationAgent;
+import ticTacToe.StateIndex;
+import ticTacToe.TTTMDP;
+import ticTacToe.ValueIterationAgent;
+
+public class TestSymmetry {
+	
+	@Test
+	public void testTransformsShareCanonicalKey() {
+		for(char xo: new char[] {'X', 'O'})
+			for(Game g: Game.generateAllValidGames(xo)) {
+				Game canonical=g.canonical();
+				assertEquals(g.canonicalHashCode(), canonical.hashCode());
+				for(int t=0;t<8;t++) {
+					Game variant=g.transform(t);
+					assertEquals(g.getState(), variant.getState());
+					assertEquals(g.canonicalHashCode(), variant.canonicalHashCode());
+					assertEquals(canonical, variant.canonical());
+				}
+			}
+	}
+	
+	private static ValueIterationAgent valueIteration(boolean symmetric)
+	{
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		agent.setSymmetric(symmetric);
+		agent.setDense(true);
+		agent.setJacobi(true);
+		agent.train();
+		return agent;
+	}
+	
+	private static PolicyIterationAgent policyIteration(boolean symmetric)
+	{
+		PolicyIterationAgent agent=new PolicyIterationAgent(new TTTMDP(), 0.9);
+		agent.setSymmetric(symmetric);
+		agent.setDense(true);
+		agent.train();
+		return agent;
+	}
+	
+	@Test
+	public void testSymmetricValueIterationMatchesFull() {
+		ValueIterationAgent full=valueIteration(false);
+		ValueIterationAgent symmetric=valueIteration(true);
+		
+		for(Game g: Game.generateAllValidGames('X'))
+			assertEquals(full.getValue(g), symmetric.getValue(g), 1e-9);
+	}
+	
+	@Test
+	public void testSymmetricPolicyIterationMatchesFull() {
+		PolicyIterationAgent full=policyIteration(false);
+		PolicyIterationAgent symmetric=policyIteration(true);
+		
+		for(Game g: Game.generateAllValidGames('X'))
+			assertEquals(full.getValue(g), symmetric.getValue(g), 1e-6);
+	}
+	
+	@Test
+	public void testSymmetricQTableMatchesFull() throws IllegalMoveException {
+		DenseQTable full=new DenseQTable(StateIndex.getInstance(false));
+		DenseQTable symmetric=new DenseQTable(StateIndex.getInstance(true));
+		List<Game> games=Game.generateAllValidGames('X');
+		
+		//Q(g, m) is the canonical hash of the game m leads to, which every symmetric variant of (g, m) shares. The 
+		//symmetric table is only given the values of canonical games.
+		for(Game g: games) {
+			if (g.isTerminal())
+				continue;
+			for(Move m: g.getPossibleMoves()) {
+				double q=g.simulateMove(m).canonicalHashCode();
+				full.setQValue(g, m, q);
+				if (g.equals(g.canonical()))
+					symmetric.setQValue(g, m, q);
+			}
+		}
+		
+		for(Game g: games) {
+			if (g.isTerminal())
+				continue;
+			for(Move m: g.getPossibleMoves()) {
+				assertEquals(full.getQValue(g, m), symmetric.getQValue(g, m), 0.0);
+				for(int t=0;t<8;t++)
+					assertEquals(full.getQValue(g, m), symmetric.getQValue(g.transform(t), Game.transformMove(m, t)), 0.0);
+			}
+		}
+	}
+
+}
@@ -1,10 +1,16 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
 import ticTacToe.AggressiveAgent;
 import ticTacToe.DefensiveAgent;
+import ticTacToe.Game;
 import ticTacToe.RandomAgent;
+import ticTacToe.SweepListener;
 import ticTacToe.ValueIterationAgent;
 
 public class TestValueIteration {
@@ -40,5 +46,113 @@ public class TestValueIteration {
 		
 
 	}
+	
+	private static ValueIterationAgent jacobiAgent(int threads)
+	{
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		agent.setDense(true);
+		agent.setJacobi(true);
+		agent.setThreads(threads);
+		agent.train();
+		return agent;
+	}
+	
+	@Test
+	public void testJacobiThreadsBitIdentical() {
+		ValueIterationAgent single=jacobiAgent(1);
+		ValueIterationAgent parallel=jacobiAgent(4);
+		
+		for(Game g: Game.generateAllValidGames('X')) {
+			assertEquals(Double.doubleToLongBits(single.getValue(g)), Double.doubleToLongBits(parallel.getValue(g)));
+			if (!g.isTerminal())
+				assertEquals(single.getPolicy().getMove(g), parallel.getPolicy().getMove(g));
+		}
+	}
+	
+	@Test
+	public void testPrioritizedSweepingMatchesOptimal() {
+		ValueIterationAgent optimal=TestPolicyIterationAgent.optimalAgent();
+		ValueIterationAgent prioritized=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		prioritized.setPrioritized(1e-9);
+		prioritized.train();
+		
+		for(Game g: Game.generateAllValidGames('X'))
+			assertEquals(optimal.getValue(g), prioritized.getValue(g), 1e-6);
+	}
+	
+	/**
+	 * Records every sweep it is told about.
+	 */
+	private static class Recorder implements SweepListener {
+		
+		final List<Integer> sweeps=new ArrayList<Integer>();
+		final List<Double> residuals=new ArrayList<Double>();
+		final List<Integer> policyChanges=new ArrayList<Integer>();
+		
+		public void sweepDone(int sweep, double residual, int policyChanges, long nanos)
+		{
+			this.sweeps.add(sweep);
+			this.residuals.add(residual);
+			this.policyChanges.add(policyChanges);
+		}
+		
+		void assertOneCallPerSweep()
+		{
+			for(int i=0;i<sweeps.size();i++)
+				assertEquals(i+1, (int)sweeps.get(i));
+		}
+	}
+	
+	private static Recorder converge(boolean dense, boolean jacobi, double epsilon, int stableSweeps)
+	{
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		agent.setDense(dense);
+		agent.setJacobi(jacobi);
+		agent.setConvergence(epsilon, stableSweeps);
+		Recorder recorder=new Recorder();
+		agent.addSweepListener(recorder);
+		agent.train();
+		return recorder;
+	}
+	
+	@Test
+	public void testStopsBelowResidual() {
+		for(boolean[] mode: new boolean[][] {{false, false}, {true, false}, {true, true}}) {
+			Recorder recorder=converge(mode[0], mode[1], 1e-6, 0);
+			recorder.assertOneCallPerSweep();
+			
+			int last=recorder.residuals.size()-1;
+			assertTrue(last>0);
+			assertTrue(recorder.residuals.get(last)<1e-6);
+			for(int i=0;i<last;i++)
+				assertTrue(recorder.residuals.get(i)>=1e-6);
+		}
+	}
+	
+	@Test
+	public void testStopsWhenPolicyStable() {
+		//a residual of 0 is never below 0, so only the policy can stop iteration
+		Recorder recorder=converge(true, false, 0.0, 3);
+		recorder.assertOneCallPerSweep();
+		
+		int last=recorder.policyChanges.size()-1;
+		assertTrue(last>=2);
+		int run=0;
+		for(int i=0;i<=last;i++) {
+			run=(recorder.policyChanges.get(i)==0) ? run+1 : 0;
+			assertEquals(i==last, run>=3);
+		}
+	}
+	
+	@Test
+	public void testFixedSweeps() {
+		ValueIterationAgent agent=new ValueIterationAgent(0.9, 10.0, -50.0, -1.0, 0.0);
+		Recorder recorder=new Recorder();
+		agent.addSweepListener(recorder);
+		agent.train();
+		
+		recorder.assertOneCallPerSweep();
+		assertEquals(10, recorder.sweeps.size());
+	}
 
 }